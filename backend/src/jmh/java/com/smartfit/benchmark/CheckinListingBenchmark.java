@@ -0,0 +1,87 @@
+package com.smartfit.benchmark;
+
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.service.embedded.EmbeddedCheckinStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Newest-first ordering of a user's history. {@code sortByTimestamp} is the in-memory sort listings used before
+ * Firestore ordered them, kept as the reference; {@code embeddedFirstPage} is the indexed listing of the embedded
+ * store, which is where in-memory ordering still happens.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckinListingBenchmark {
+
+    private static final String USER_ID = "benchmark-user";
+
+    @Param({"1000", "10000", "100000"})
+    private int entries;
+
+    private List<CheckinEntry> history;
+    private Path directory;
+    private EmbeddedCheckinStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+        history = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            CheckinEntry entry = new CheckinEntry();
+            entry.setUserId(USER_ID);
+            entry.setType(CheckinEntry.CheckinType.WATER);
+            entry.setWater(250);
+            entry.setTimestamp(start.plusMinutes(random.nextInt(5 * 365 * 24 * 60)));
+            history.add(entry);
+        }
+
+        directory = Files.createTempDirectory("checkin-benchmark");
+        store = new EmbeddedCheckinStore(directory.toString(), DataSize.ofMegabytes(64), false, Duration.ofDays(30));
+        store.open();
+        for (CheckinEntry entry : history) {
+            store.createEntry(entry);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<CheckinEntry> sortByTimestamp() {
+        List<CheckinEntry> sorted = new ArrayList<>(history);
+        sorted.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        return sorted;
+    }
+
+    @Benchmark
+    public CheckinPage embeddedFirstPage() {
+        return store.getAllEntriesByUserId(USER_ID, 50, null).join();
+    }
+}
@@ -0,0 +1,68 @@
+package com.smartfit.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.smartfit.model.CheckinEntry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request side of a check-in write: JSON body to {@link CheckinEntry} through CheckinEntryDeserializer, then bean
+ * validation including CheckinEntryValidator, the same way CheckinService runs it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckinRequestBenchmark {
+
+    private static final byte[] WORKOUT_JSON = ("{\"type\":\"WORKOUT\",\"title\":\"Morning run\","
+            + "\"description\":\"5k around the park\",\"calories\":420,\"duration\":32,"
+            + "\"timestamp\":\"2024-05-14T07:30:00\"}").getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CheckinEntry entry;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        entry = new CheckinEntry();
+        entry.setUserId("benchmark-user");
+        entry.setType(CheckinEntry.CheckinType.EXERCISE);
+        entry.setTitle("Rowing");
+        entry.setCalories(310);
+        entry.setDuration(25);
+        entry.setTimestamp(LocalDateTime.of(2024, 5, 14, 18, 0));
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public CheckinEntry deserialize() throws IOException {
+        return objectMapper.readValue(WORKOUT_JSON, CheckinEntry.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CheckinEntry>> validate() {
+        return validator.validate(entry);
+    }
+}
@@ -0,0 +1,57 @@
+package com.smartfit.service;
+
+import com.google.cloud.Timestamp;
+import com.smartfit.model.CheckinEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Firestore document mapping of {@link FirebaseFirestoreService}. Reads go through the same map that
+ * {@code DocumentSnapshot.getData()} returns, so no Firestore backend is needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckinMappingBenchmark {
+
+    private Map<String, Object> document;
+    private CheckinEntry entry;
+
+    @Setup
+    public void setUp() {
+        Timestamp now = Timestamp.of(new Date());
+        document = new HashMap<>();
+        document.put("userId", "benchmark-user");
+        document.put("type", "MEAL");
+        document.put("title", "Chicken salad");
+        document.put("description", "Lunch");
+        document.put("calories", 540L);
+        document.put("duration", null);
+        document.put("weight", null);
+        document.put("water", null);
+        document.put("timestamp", now);
+        document.put("createdAt", now);
+        document.put("updatedAt", now);
+
+        entry = FirebaseFirestoreService.dataToCheckinEntry("aBcDeFgHiJkLmNoPqRsT", document);
+        entry.setTimestamp(LocalDateTime.of(2024, 5, 14, 12, 30));
+    }
+
+    @Benchmark
+    public CheckinEntry documentToCheckinEntry() {
+        return FirebaseFirestoreService.dataToCheckinEntry("aBcDeFgHiJkLmNoPqRsT", document);
+    }
+
+    @Benchmark
+    public Map<String, Object> checkinEntryToMap() {
+        return FirebaseFirestoreService.checkinEntryToMap(entry);
+    }
+}
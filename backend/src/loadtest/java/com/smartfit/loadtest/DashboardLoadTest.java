@@ -0,0 +1,248 @@
+package com.smartfit.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates concurrent users running a dashboard session against a running backend: verify the login, list the
+ * latest check-ins, load the week's stats, add a check-in, think, repeat. Prints throughput and latency percentiles
+ * per endpoint at the end.
+ *
+ * Each virtual user signs up with the Firebase Auth emulator for its token, so the backend must run with the
+ * loadtest profile (see application-loadtest.yml). Users are closed loops: a slow response delays that user's next
+ * request, so the percentiles are those seen at the offered concurrency, not at a fixed arrival rate.
+ *
+ * Options, all {@code --name=value}: base-url, auth-emulator, users, duration, ramp-up, think-time.
+ */
+public class DashboardLoadTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String[] TYPES = {"WORKOUT", "EXERCISE", "MEAL", "WATER", "WEIGHT"};
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final Map<String, EndpointStats> stats = new ConcurrentSkipListMap<>();
+    private final String baseUrl;
+    private final String authEmulator;
+    private final Duration thinkTime;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private DashboardLoadTest(String baseUrl, String authEmulator, Duration thinkTime) {
+        this.baseUrl = baseUrl;
+        this.authEmulator = authEmulator;
+        this.thinkTime = thinkTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        int users = Integer.parseInt(options.getOrDefault("users", "50"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "60s"));
+        Duration rampUp = Duration.parse("PT" + options.getOrDefault("ramp-up", "10s"));
+        DashboardLoadTest loadTest = new DashboardLoadTest(
+                options.getOrDefault("base-url", "http://localhost:8080/api"),
+                options.getOrDefault("auth-emulator", "localhost:9099"),
+                Duration.parse("PT" + options.getOrDefault("think-time", "0.5s")));
+
+        System.out.printf("%d users for %s against %s%n", users, duration, loadTest.baseUrl);
+        loadTest.run(users, duration, rampUp);
+    }
+
+    private void run(int users, Duration duration, Duration rampUp) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        long start = System.nanoTime();
+        long deadline = start + rampUp.toNanos() + duration.toNanos();
+
+        for (int i = 0; i < users; i++) {
+            long startDelay = rampUp.toNanos() * i / users;
+            int user = i;
+            pool.execute(() -> {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(startDelay);
+                    runSession(user, deadline);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    System.err.printf("User %d stopped: %s%n", user, e);
+                }
+            });
+        }
+
+        pool.shutdown();
+        if (!pool.awaitTermination(rampUp.toSeconds() + duration.toSeconds() + 60, TimeUnit.SECONDS)) {
+            pool.shutdownNow();
+        }
+        report(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void runSession(int user, long deadline) throws Exception {
+        String idToken = signUp(user);
+
+        while (System.nanoTime() < deadline) {
+            send("POST /auth/verify", request("/auth/verify", null)
+                    .POST(json(Map.of("idToken", idToken))));
+            send("GET /checkin", request("/checkin?limit=50", idToken).GET());
+
+            LocalDate today = LocalDate.now();
+            send("GET /checkin/stats", request("/checkin/stats?startDate=" + encode(today.minusDays(6).atStartOfDay())
+                    + "&endDate=" + encode(today.atTime(23, 59, 59)), idToken).GET());
+            send("POST /checkin", request("/checkin", idToken).POST(json(randomEntry())));
+
+            // Think time varies by half either way, so users do not fall into lockstep
+            long thinkMillis = thinkTime.toMillis();
+            if (thinkMillis > 0) {
+                Thread.sleep(thinkMillis / 2 + ThreadLocalRandom.current().nextLong(thinkMillis + 1));
+            }
+        }
+    }
+
+    private String signUp(int user) throws Exception {
+        HttpRequest signUp = HttpRequest.newBuilder(URI.create("http://" + authEmulator
+                        + "/identitytoolkit.googleapis.com/v1/accounts:signUp?key=loadtest"))
+                .header("Content-Type", "application/json")
+                .POST(json(Map.of("email", "loadtest-" + runId + "-" + user + "@example.com",
+                        "password", "loadtest-password", "returnSecureToken", true)))
+                .build();
+        HttpResponse<String> response = client.send(signUp, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Sign-up failed with " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        return body.get("idToken").asText();
+    }
+
+    private void send(String endpoint, HttpRequest.Builder request) throws InterruptedException {
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, e -> new EndpointStats());
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 400;
+        } catch (java.io.IOException e) {
+            success = false;
+        }
+        endpointStats.record(System.nanoTime() - start, success);
+    }
+
+    private HttpRequest.Builder request(String path, String idToken) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json");
+        if (idToken != null) {
+            builder.header("Authorization", "Bearer " + idToken);
+        }
+        return builder;
+    }
+
+    private static Map<String, Object> randomEntry() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String type = TYPES[random.nextInt(TYPES.length)];
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("type", type);
+        entry.put("title", "Load test " + type.toLowerCase());
+        entry.put("timestamp", LocalDateTime.now().withNano(0).toString());
+        switch (type) {
+            case "WATER" -> entry.put("water", 250);
+            case "WEIGHT" -> entry.put("weight", 60 + random.nextInt(400) / 10.0);
+            default -> {
+                entry.put("calories", 100 + random.nextInt(600));
+                entry.put("duration", 10 + random.nextInt(80));
+            }
+        }
+        return entry;
+    }
+
+    private static HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(LocalDateTime time) {
+        return URLEncoder.encode(time.toString(), StandardCharsets.UTF_8);
+    }
+
+    private void report(Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        System.out.printf("%n%-20s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+        long totalRequests = 0;
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            long[] latencies = entry.getValue().sortedLatencies();
+            totalRequests += latencies.length;
+            System.out.printf("%-20s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    entry.getKey(), latencies.length, entry.getValue().errors(), latencies.length / seconds,
+                    millis(percentile(latencies, 50)), millis(percentile(latencies, 95)),
+                    millis(percentile(latencies, 99)), millis(latencies.length > 0 ? latencies[latencies.length - 1] : 0));
+        }
+        System.out.printf("%nTotal: %d requests in %.1f s, %.1f req/s%n", totalRequests, seconds, totalRequests / seconds);
+    }
+
+    // Nearest-rank percentile
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Every latency of one endpoint, kept raw so the percentiles are exact.
+     */
+    private static class EndpointStats {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void record(long nanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -1,83 +1,173 @@
 package com.smartfit.config;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.smartfit.model.CheckinEntry;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Reads a check-in in a single pass over the parser tokens, without building a tree first.
+ *
+ * Malformed values are reported as {@link JsonMappingException}s carrying the field name, which Spring turns into
+ * an HttpMessageNotReadableException and {@link com.smartfit.exception.GlobalExceptionHandler} into a 400.
+ */
 public class CheckinEntryDeserializer extends JsonDeserializer<CheckinEntry> {
-    
+
+    private static final Map<String, CheckinEntry.CheckinType> TYPES = new HashMap<>();
+
+    static {
+        for (CheckinEntry.CheckinType type : CheckinEntry.CheckinType.values()) {
+            TYPES.put(type.name(), type);
+            TYPES.put(type.name().toLowerCase(), type);
+        }
+    }
+
     @Override
     public CheckinEntry deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        JsonNode node = p.getCodec().readTree(p);
-        
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            p.nextToken();
+        }
+        if (p.currentToken() != JsonToken.FIELD_NAME && p.currentToken() != JsonToken.END_OBJECT) {
+            throw MismatchedInputException.from(p, CheckinEntry.class, "Check-in must be a JSON object");
+        }
+
         CheckinEntry entry = new CheckinEntry();
-        
+
         // Set userId from authentication context
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getName() != null) {
             entry.setUserId(authentication.getName());
         }
-        
-        // Deserialize other fields
-        if (node.has("type")) {
-            entry.setType(CheckinEntry.CheckinType.valueOf(node.get("type").asText()));
+
+        for (; p.currentToken() == JsonToken.FIELD_NAME; p.nextToken()) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+
+            try {
+                switch (field) {
+                    case "type" -> entry.setType(readType(p, token));
+                    case "title" -> entry.setTitle(readText(p, token));
+                    case "description" -> entry.setDescription(readText(p, token));
+                    case "calories" -> entry.setCalories(readInt(p, token));
+                    case "duration" -> entry.setDuration(readInt(p, token));
+                    case "weight" -> entry.setWeight(readDouble(p, token));
+                    case "water" -> entry.setWater(readInt(p, token));
+                    case "timestamp" -> readTimestamp(p, token, entry);
+                    // id, userId and the audit fields are assigned by the server
+                    default -> p.skipChildren();
+                }
+            } catch (JsonMappingException e) {
+                e.prependPath(entry, field);
+                throw e;
+            }
+        }
+
+        if (entry.getTimestamp() == null) {
+            // Default to now, moved into the user's zone like any timestamp with an offset
+            entry.setTimestamp(LocalDateTime.now(ZoneOffset.UTC));
+            entry.setTimestampOffset(ZoneOffset.UTC);
+        }
+
+        return entry;
+    }
+
+    private static CheckinEntry.CheckinType readType(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw MismatchedInputException.from(p, CheckinEntry.CheckinType.class, "Type must be a string");
         }
-        
-        if (node.has("title")) {
-            entry.setTitle(node.get("title").asText());
+
+        String text = p.getText();
+        CheckinEntry.CheckinType type = TYPES.get(text);
+        if (type == null) {
+            type = TYPES.get(text.toUpperCase());
         }
-        
-        if (node.has("description")) {
-            entry.setDescription(node.get("description").asText());
+        if (type == null) {
+            throw InvalidFormatException.from(p, "Invalid check-in type: " + text, text, CheckinEntry.CheckinType.class);
         }
-        
-        if (node.has("calories") && !node.get("calories").isNull()) {
-            entry.setCalories(node.get("calories").asInt());
+        return type;
+    }
+
+    private static String readText(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
         }
-        
-        if (node.has("duration") && !node.get("duration").isNull()) {
-            entry.setDuration(node.get("duration").asInt());
+        if (!token.isScalarValue()) {
+            throw MismatchedInputException.from(p, String.class, "Expected a string");
         }
-        
-        if (node.has("weight") && !node.get("weight").isNull()) {
-            entry.setWeight(node.get("weight").asDouble());
+        return p.getText();
+    }
+
+    private static Integer readInt(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
         }
-        
-        if (node.has("water") && !node.get("water").isNull()) {
-            entry.setWater(node.get("water").asInt());
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return p.getValueAsInt();
         }
-        
-        if (node.has("timestamp") && !node.get("timestamp").isNull()) {
-            String timestampStr = node.get("timestamp").asText();
+        if (token == JsonToken.VALUE_STRING) {
+            String text = p.getText().trim();
             try {
-                // Handle different timestamp formats
-                LocalDateTime timestamp;
-                if (timestampStr.contains("T")) {
-                    // ISO format with timezone info
-                    timestamp = LocalDateTime.parse(timestampStr, DateTimeFormatter.ISO_DATE_TIME);
-                } else {
-                    // Try parsing as a simple date string
-                    timestamp = LocalDateTime.parse(timestampStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                }
-                entry.setTimestamp(timestamp);
-            } catch (Exception e) {
-                System.err.println("Failed to parse timestamp: " + timestampStr + ", using current time. Error: " + e.getMessage());
-                // If parsing fails, use current time
-                entry.setTimestamp(LocalDateTime.now());
+                return Integer.valueOf(text);
+            } catch (NumberFormatException e) {
+                throw InvalidFormatException.from(p, "Expected a whole number, got: " + text, text, Integer.class);
             }
-        } else {
-            // Set default timestamp if not provided
-            entry.setTimestamp(LocalDateTime.now());
         }
-        
-        return entry;
+        throw MismatchedInputException.from(p, Integer.class, "Expected a number");
+    }
+
+    private static Double readDouble(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return p.getValueAsDouble();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = p.getText().trim();
+            try {
+                return Double.valueOf(text);
+            } catch (NumberFormatException e) {
+                throw InvalidFormatException.from(p, "Expected a number, got: " + text, text, Double.class);
+            }
+        }
+        throw MismatchedInputException.from(p, Double.class, "Expected a number");
+    }
+
+    private static void readTimestamp(JsonParser p, JsonToken token, CheckinEntry entry) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            throw MismatchedInputException.from(p, LocalDateTime.class, "Timestamp must be an ISO-8601 string");
+        }
+
+        String text = p.getText();
+        try {
+            // ISO date-time; an offset or zone is kept until CheckinService knows the user's zone
+            TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parse(text);
+            entry.setTimestamp(LocalDateTime.from(parsed));
+            entry.setTimestampOffset(parsed.isSupported(ChronoField.OFFSET_SECONDS) ? ZoneOffset.from(parsed) : null);
+        } catch (DateTimeException e) {
+            throw InvalidFormatException.from(p, "Invalid timestamp: " + text, text, LocalDateTime.class);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,55 @@
 package com.smartfit.config;
 
+import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.firestore.Firestore;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
 import com.google.firebase.cloud.FirestoreClient;
 import com.google.firebase.auth.FirebaseAuth;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The Firebase app and its clients are created on first use, not at startup: reading the credentials and building
+ * the app takes a good part of a cold start. Injection points take them {@code @Lazy} so the startup does not
+ * resolve them either; {@link com.smartfit.service.FirebaseWarmup} creates them in the background instead.
+ */
 @Configuration
 public class FirebaseConfig {
 
     @Bean
-    public Firestore firestore() {
-        return FirestoreClient.getFirestore();
+    @Lazy
+    public FirebaseApp firebaseApp(@Value("${firebase.project-id}") String projectId,
+                                   @Value("${firebase.credentials-file}") String credentialsFile) throws IOException {
+        // Another context in the same JVM may have initialized it already
+        if (!FirebaseApp.getApps().isEmpty()) {
+            return FirebaseApp.getInstance();
+        }
+
+        try (InputStream credentials = new ClassPathResource(credentialsFile).getInputStream()) {
+            FirebaseOptions options = FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.fromStream(credentials))
+                .setProjectId(projectId)
+                .build();
+            return FirebaseApp.initializeApp(options);
+        }
+    }
+
+    @Bean
+    @Lazy
+    public Firestore firestore(FirebaseApp firebaseApp) {
+        return FirestoreClient.getFirestore(firebaseApp);
     }
 
     @Bean
-    public FirebaseAuth firebaseAuth() {
-        return FirebaseAuth.getInstance();
+    @Lazy
+    public FirebaseAuth firebaseAuth(FirebaseApp firebaseApp) {
+        return FirebaseAuth.getInstance(firebaseApp);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.smartfit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.smartfit.service.OperationMetrics;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * CBOR and Smile alongside JSON, picked through Accept (responses) or Content-Type (request bodies). Both use a
+ * copy of Boot's ObjectMapper, so dates, modules and the check-in deserializer behave exactly as with JSON.
+ *
+ * The converters subclass Spring's own CBOR and Smile converters, so Boot puts them where the defaults were, after
+ * JSON: a request without Accept, or one accepting any type, still gets JSON.
+ */
+@Configuration
+public class JacksonFormatsConfig {
+
+    // Types with a @JsonFilter serialize every property unless a ?fields= projection replaces the filters
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer serializeAllByDefault() {
+        return builder -> builder.filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @Bean
+    public TimedCborHttpMessageConverter cborHttpMessageConverter(ObjectMapper objectMapper, OperationMetrics metrics) {
+        return new TimedCborHttpMessageConverter(objectMapper.copyWith(new CBORFactory()), metrics);
+    }
+
+    @Bean
+    public TimedSmileHttpMessageConverter smileHttpMessageConverter(ObjectMapper objectMapper,
+                                                                   OperationMetrics metrics) {
+        return new TimedSmileHttpMessageConverter(objectMapper.copyWith(new SmileFactory()), metrics);
+    }
+}
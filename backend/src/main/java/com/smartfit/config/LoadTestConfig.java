@@ -0,0 +1,43 @@
+package com.smartfit.config;
+
+import com.smartfit.service.CheckinStore;
+import com.smartfit.service.InMemorySettingsService;
+import com.smartfit.service.OperationMetrics;
+import com.smartfit.service.SettingsCache;
+import com.smartfit.service.SettingsService;
+import com.smartfit.service.SimulatedLatencyCheckinStore;
+import com.smartfit.service.UserDataVersionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * The loadtest profile, see application-loadtest.yml: puts a simulated round-trip latency in front of the check-in
+ * store, so the embedded store stands in for Firestore with production-like timings, and keeps settings in memory.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    // The store parameter resolves to the profile's real store, a bean is never injected into itself
+    @Bean
+    @Primary
+    public CheckinStore simulatedLatencyCheckinStore(CheckinStore store,
+                                                     @Value("${loadtest.store-latency:0ms}") Duration latency,
+                                                     @Value("${loadtest.store-latency-jitter:0ms}") Duration jitter) {
+        return new SimulatedLatencyCheckinStore(store, latency, jitter);
+    }
+
+    // Check-ins read the user's time zone from the settings, which would otherwise need Firestore
+    @Bean
+    @Primary
+    public SettingsService inMemorySettingsService(SettingsCache settingsCache,
+                                                   UserDataVersionService userDataVersionService,
+                                                   OperationMetrics metrics) {
+        return new InMemorySettingsService(settingsCache, userDataVersionService, metrics);
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartfit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfit.service.OperationMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+/**
+ * Replaces Spring Boot's JSON converter and bean validator with timed ones, see {@link OperationMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   OperationMetrics metrics) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, metrics);
+    }
+
+    @Bean
+    public LocalValidatorFactoryBean defaultValidator(OperationMetrics metrics) {
+        return new TimedValidator(metrics);
+    }
+}
@@ -1,10 +1,15 @@
 package com.smartfit.config;
 
+import com.smartfit.controller.CheckinController;
 import com.smartfit.security.JwtAuthenticationFilter;
 import com.smartfit.security.JwtAuthenticationEntryPoint;
 import com.smartfit.security.FirebaseAuthenticationProvider;
+import com.smartfit.security.UserRateLimitFilter;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -27,13 +32,16 @@ public class SecurityConfig {
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final FirebaseAuthenticationProvider firebaseAuthenticationProvider;
+    private final UserRateLimitFilter userRateLimitFilter;
 
     public SecurityConfig(JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
                          JwtAuthenticationFilter jwtAuthenticationFilter,
-                         FirebaseAuthenticationProvider firebaseAuthenticationProvider) {
+                         FirebaseAuthenticationProvider firebaseAuthenticationProvider,
+                         UserRateLimitFilter userRateLimitFilter) {
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.firebaseAuthenticationProvider = firebaseAuthenticationProvider;
+        this.userRateLimitFilter = userRateLimitFilter;
     }
 
     @Bean
@@ -44,13 +52,19 @@ public class SecurityConfig {
             .exceptionHandling(exceptionHandling -> exceptionHandling.authenticationEntryPoint(jwtAuthenticationEntryPoint))
             .sessionManagement(sessionManagement -> sessionManagement.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // Async results are written on a second dispatch, the request itself was authorized on the first
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll()
+                // Served on the management port only, for the Prometheus scraper and health checks
+                .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                 .anyRequest().authenticated()
             )
             .headers(headers -> headers.frameOptions(frameOptions -> frameOptions.disable())) // For H2 console
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Needs the user, so it runs once the token is verified
+            .addFilterAfter(userRateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -73,6 +87,8 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(CheckinController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG,
+                HttpHeaders.RETRY_AFTER));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,58 @@
+package com.smartfit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfit.service.OperationMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * The CBOR converter Spring MVC would register, timed the same way as {@link TimedJacksonHttpMessageConverter}.
+ * Being of the default's type, it takes the default's place behind JSON, so it is only picked when the client asks
+ * for CBOR in Accept or sends it as Content-Type.
+ */
+public class TimedCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    private final OperationMetrics metrics;
+
+    public TimedCborHttpMessageConverter(ObjectMapper objectMapper, OperationMetrics metrics) {
+        super(objectMapper);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        Timer.Sample sample = metrics.start();
+        String outcome = OperationMetrics.ERROR;
+        try {
+            Object body = super.read(type, contextClass, inputMessage);
+            outcome = OperationMetrics.SUCCESS;
+            return body;
+        } finally {
+            metrics.stop(sample, OperationMetrics.SERIALIZATION,
+                    TimedJacksonHttpMessageConverter.operation("cbor", "read", type), outcome);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = metrics.start();
+        String outcome = OperationMetrics.ERROR;
+        try {
+            super.writeInternal(object, type, outputMessage);
+            outcome = OperationMetrics.SUCCESS;
+        } finally {
+            metrics.stop(sample, OperationMetrics.SERIALIZATION,
+                    TimedJacksonHttpMessageConverter.operation("cbor", "write",
+                            type != null ? type : object.getClass()), outcome);
+        }
+    }
+}
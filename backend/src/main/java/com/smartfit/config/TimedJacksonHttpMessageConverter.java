@@ -0,0 +1,60 @@
+package com.smartfit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfit.service.OperationMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * The JSON converter Spring Boot would register, timing every request body it reads and response body it writes.
+ * Writing includes flushing to the client, so slow readers show up here too.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final OperationMetrics metrics;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, OperationMetrics metrics) {
+        super(objectMapper);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        Timer.Sample sample = metrics.start();
+        String outcome = OperationMetrics.ERROR;
+        try {
+            Object body = super.read(type, contextClass, inputMessage);
+            outcome = OperationMetrics.SUCCESS;
+            return body;
+        } finally {
+            metrics.stop(sample, OperationMetrics.SERIALIZATION, operation("json", "read", type), outcome);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = metrics.start();
+        String outcome = OperationMetrics.ERROR;
+        try {
+            super.writeInternal(object, type, outputMessage);
+            outcome = OperationMetrics.SUCCESS;
+        } finally {
+            metrics.stop(sample, OperationMetrics.SERIALIZATION,
+                    operation("json", "write", type != null ? type : object.getClass()), outcome);
+        }
+    }
+
+    // "json write List<CheckinEntry>" rather than the fully qualified name, the set of body types is small and fixed
+    static String operation(String format, String direction, Type type) {
+        return format + " " + direction + " " + type.getTypeName().replaceAll("[\\w$]+\\.", "");
+    }
+}
@@ -0,0 +1,50 @@
+package com.smartfit.config;
+
+import com.smartfit.service.OperationMetrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import org.springframework.validation.Errors;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.util.Set;
+
+/**
+ * The bean validator Spring Boot would register, timing each validation of a request body (through {@code @Valid})
+ * or of a batch operation (through {@link com.smartfit.service.CheckinService}). The outcome is valid or invalid.
+ */
+public class TimedValidator extends LocalValidatorFactoryBean {
+
+    private final OperationMetrics metrics;
+
+    public TimedValidator(OperationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        Timer.Sample sample = metrics.start();
+        int errorsBefore = errors.getErrorCount();
+        super.validate(target, errors);
+        stop(sample, target, errors.getErrorCount() == errorsBefore);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors, Object... validationHints) {
+        Timer.Sample sample = metrics.start();
+        int errorsBefore = errors.getErrorCount();
+        super.validate(target, errors, validationHints);
+        stop(sample, target, errors.getErrorCount() == errorsBefore);
+    }
+
+    @Override
+    public <T> Set<ConstraintViolation<T>> validate(T object, Class<?>... groups) {
+        Timer.Sample sample = metrics.start();
+        Set<ConstraintViolation<T>> violations = super.validate(object, groups);
+        stop(sample, object, violations.isEmpty());
+        return violations;
+    }
+
+    private void stop(Timer.Sample sample, Object target, boolean valid) {
+        metrics.stop(sample, OperationMetrics.VALIDATION, target.getClass().getSimpleName(), valid ? "valid" : "invalid");
+    }
+}
@@ -1,122 +1,260 @@
 package com.smartfit.controller;
 
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChangesPage;
 import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinSeries;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
 import com.smartfit.service.CheckinService;
+import com.smartfit.service.CheckinStreamService;
+import com.smartfit.service.CheckinVersions;
+import com.smartfit.service.UserDataVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/checkin")
 @CrossOrigin(origins = "*")
 public class CheckinController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String EXPORT_TIMEOUT_INTERCEPTOR = CheckinController.class.getName() + ".exportTimeout";
+
     private final CheckinService checkinService;
+    private final CheckinStreamService checkinStreamService;
+    private final UserDataVersionService userDataVersionService;
+    private final Duration exportTimeout;
 
     @Autowired
-    public CheckinController(CheckinService checkinService) {
+    public CheckinController(CheckinService checkinService, CheckinStreamService checkinStreamService,
+                             UserDataVersionService userDataVersionService,
+                             @Value("${checkin.export.timeout:10m}") Duration exportTimeout) {
         this.checkinService = checkinService;
+        this.checkinStreamService = checkinStreamService;
+        this.userDataVersionService = userDataVersionService;
+        this.exportTimeout = exportTimeout;
     }
 
     @GetMapping
-    public ResponseEntity<List<CheckinEntry>> getAllEntries(Authentication authentication) {
+    public CompletableFuture<ResponseEntity<List<CheckinEntry>>> getAllEntries(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String startAfter,
+            @RequestParam(required = false) List<String> ids,
+            Authentication authentication,
+            WebRequest request) {
         String userId = authentication.getName();
-        List<CheckinEntry> entries = checkinService.getAllEntriesByUserId(userId);
-        return ResponseEntity.ok(entries);
+        if (ids != null) {
+            if (ids.size() > CheckinService.MAX_IDS_PER_REQUEST) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+            }
+            return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                    () -> checkinService.getEntriesByIds(userId, ids).thenApply(ResponseEntity::ok));
+        }
+
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> checkinService.getAllEntriesByUserId(userId, limit, startAfter).thenApply(this::toResponse));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CheckinEntry> getEntryById(@PathVariable String id, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<CheckinEntry>> getEntryById(@PathVariable String id,
+                                                                        Authentication authentication) {
         String userId = authentication.getName();
-        return checkinService.getEntryById(id)
-                .filter(entry -> entry.getUserId().equals(userId))
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        return checkinService.getEntryById(id).thenApply(entry -> entry
+                .filter(existingEntry -> existingEntry.getUserId().equals(userId))
+                .map(existingEntry -> ResponseEntity.ok().eTag(CheckinVersions.etag(existingEntry)).body(existingEntry))
+                .orElse(ResponseEntity.notFound().build()));
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<List<CheckinEntry>> getEntriesByType(
+    public CompletableFuture<ResponseEntity<List<CheckinEntry>>> getEntriesByType(
             @PathVariable CheckinEntry.CheckinType type, 
-            Authentication authentication) {
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String startAfter,
+            Authentication authentication,
+            WebRequest request) {
         String userId = authentication.getName();
-        List<CheckinEntry> entries = checkinService.getEntriesByUserIdAndType(userId, type);
-        return ResponseEntity.ok(entries);
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> checkinService.getEntriesByUserIdAndType(userId, type, limit, startAfter).thenApply(this::toResponse));
     }
 
     @GetMapping("/date-range")
-    public ResponseEntity<List<CheckinEntry>> getEntriesByDateRange(
+    public CompletableFuture<ResponseEntity<List<CheckinEntry>>> getEntriesByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String startAfter,
+            Authentication authentication,
+            WebRequest request) {
+        String userId = authentication.getName();
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> checkinService.getEntriesByUserIdAndDateRange(userId, startDate, endDate, limit, startAfter)
+                        .thenApply(this::toResponse));
+    }
+
+    /**
+     * Delta sync: the changes after the cursor of the previous call, or every entry without one. 410 when the
+     * cursor is too old and the client has to fetch everything again.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<CheckinChangesPage>> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
         String userId = authentication.getName();
-        List<CheckinEntry> entries = checkinService.getEntriesByUserIdAndDateRange(userId, startDate, endDate);
-        return ResponseEntity.ok(entries);
+        return checkinService.getChanges(userId, since, limit).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * All entries as NDJSON. Unlike other asynchronous requests the export may take minutes on a slow client, so it
+     * gets its own timeout (checkin.export.timeout) instead of spring.mvc.async.request-timeout.
+     */
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEntries(Authentication authentication,
+                                                               HttpServletRequest request) {
+        String userId = authentication.getName();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(EXPORT_TIMEOUT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        // Runs right before the export starts asynchronously, the only point its timeout can be set
+                        ((AsyncWebRequest) webRequest).setTimeout(exportTimeout.toMillis());
+                    }
+                });
+        StreamingResponseBody body = outputStream -> checkinService.exportEntries(userId, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"checkins.ndjson\"")
+                .body(body);
+    }
+
+    /**
+     * Live feed of the user's check-in changes as Server-Sent Events named added, modified and removed.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(Authentication authentication) {
+        return checkinStreamService.connect(authentication.getName());
     }
 
     @PostMapping
-    public ResponseEntity<CheckinEntry> createEntry(@Valid @RequestBody CheckinEntry entry, 
-                                                   Authentication authentication) {
+    public CompletableFuture<ResponseEntity<CheckinEntry>> createEntry(@Valid @RequestBody CheckinEntry entry,
+                                                                       Authentication authentication) {
         // userId is automatically set by the custom deserializer
-        CheckinEntry createdEntry = checkinService.createEntry(entry);
-        return ResponseEntity.ok(createdEntry);
+        return checkinService.createEntry(entry).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<CheckinBatchResult>>> applyBatch(
+            @RequestBody List<CheckinBatchOperation> operations,
+            Authentication authentication) {
+        if (operations.size() > CheckinService.MAX_BATCH_OPERATIONS) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        String userId = authentication.getName();
+        return checkinService.applyBatch(userId, operations).thenApply(ResponseEntity::ok);
     }
 
+    /**
+     * With If-Match set to the entry's ETag the update only goes through if nobody changed the entry since, 409
+     * otherwise. Unknown and foreign entries are 404.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<CheckinEntry> updateEntry(@PathVariable String id, 
-                                                   @Valid @RequestBody CheckinEntry entry,
-                                                   Authentication authentication) {
+    public CompletableFuture<ResponseEntity<CheckinEntry>> updateEntry(
+            @PathVariable String id,
+            @Valid @RequestBody CheckinEntry entry,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            Authentication authentication) {
         String userId = authentication.getName();
-        return checkinService.getEntryById(id)
-                .filter(existingEntry -> existingEntry.getUserId().equals(userId))
-                .map(existingEntry -> {
-                    CheckinEntry updatedEntry = checkinService.updateEntry(id, entry);
-                    return ResponseEntity.ok(updatedEntry);
-                })
-                .orElse(ResponseEntity.notFound().build());
+        return checkinService.updateEntry(userId, id, entry, CheckinVersions.parseIfMatch(ifMatch))
+                .thenApply(updated -> ResponseEntity.ok().eTag(CheckinVersions.etag(updated)).body(updated));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteEntry(@PathVariable String id, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<Void>> deleteEntry(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            Authentication authentication) {
         String userId = authentication.getName();
-        return checkinService.getEntryById(id)
-                .filter(entry -> entry.getUserId().equals(userId))
-                .map(entry -> {
-                    checkinService.deleteEntry(id);
-                    return ResponseEntity.noContent().<Void>build();
-                })
-                .orElse(ResponseEntity.notFound().build());
+        return checkinService.deleteEntry(userId, id, CheckinVersions.parseIfMatch(ifMatch))
+                .thenApply(deleted -> ResponseEntity.noContent().<Void>build());
     }
 
     @GetMapping("/stats")
-    public ResponseEntity<Object> getStats(
+    public CompletableFuture<ResponseEntity<CheckinStats>> getStats(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest request) {
         String userId = authentication.getName();
-        
-        long workoutCount = checkinService.getEntryCountByTypeAndDateRange(userId, CheckinEntry.CheckinType.WORKOUT, startDate, endDate);
-        long exerciseCount = checkinService.getEntryCountByTypeAndDateRange(userId, CheckinEntry.CheckinType.EXERCISE, startDate, endDate);
-        long mealCount = checkinService.getEntryCountByTypeAndDateRange(userId, CheckinEntry.CheckinType.MEAL, startDate, endDate);
-        long weightCount = checkinService.getEntryCountByTypeAndDateRange(userId, CheckinEntry.CheckinType.WEIGHT, startDate, endDate);
-        long waterCount = checkinService.getEntryCountByTypeAndDateRange(userId, CheckinEntry.CheckinType.WATER, startDate, endDate);
-        
-        return ResponseEntity.ok(new Object() {
-            @SuppressWarnings("unused")
-            public final long workouts = workoutCount;
-            @SuppressWarnings("unused")
-            public final long exercises = exerciseCount;
-            @SuppressWarnings("unused")
-            public final long meals = mealCount;
-            @SuppressWarnings("unused")
-            public final long weights = weightCount;
-            @SuppressWarnings("unused")
-            public final long water = waterCount;
-        });
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> checkinService.getStatsByUserIdAndDateRange(userId, startDate, endDate).thenApply(ResponseEntity::ok));
+    }
+
+    @GetMapping("/rollups")
+    public CompletableFuture<ResponseEntity<List<DailyRollup>>> getDailyRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            Authentication authentication,
+            WebRequest request) {
+        String userId = authentication.getName();
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> checkinService.getDailyRollups(userId, startDate, endDate).thenApply(ResponseEntity::ok));
+    }
+
+    @GetMapping("/series")
+    public CompletableFuture<ResponseEntity<CheckinSeries>> getSeries(
+            @RequestParam String period,
+            @RequestParam String metric,
+            @RequestParam(required = false) Integer points,
+            Authentication authentication,
+            WebRequest request) {
+        String userId = authentication.getName();
+        // The series ends on the user's today, so it changes at their midnight even without a write
+        return checkinService.getToday(userId).thenCompose(today ->
+                ConditionalResponses.withETag(userDataVersionService.etag(userId, today), request,
+                        () -> checkinService.getSeries(userId, today, period, metric, points)
+                                .thenApply(ResponseEntity::ok)));
+    }
+
+    // No ETag: the current streak also changes when a day passes without a check-in
+    @GetMapping("/streaks")
+    public CompletableFuture<ResponseEntity<List<CheckinStreak>>> getStreaks(Authentication authentication) {
+        String userId = authentication.getName();
+        return checkinService.getStreaks(userId).thenApply(ResponseEntity::ok);
+    }
+
+    // The body stays a plain list for existing clients, the cursor of the next page travels in a header
+    private ResponseEntity<List<CheckinEntry>> toResponse(CheckinPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getEntries());
     }
 } 
\ No newline at end of file
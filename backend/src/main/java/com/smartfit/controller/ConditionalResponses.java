@@ -0,0 +1,62 @@
+package com.smartfit.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET on top of the per-user data version: a matching If-None-Match is answered with 304 before
+ * anything is loaded, every other successful response carries the ETag.
+ *
+ * The format picked from Accept and a ?fields= projection make a different representation of the same data, so
+ * they are folded into the ETag and the responses vary by Accept.
+ */
+final class ConditionalResponses {
+
+    // Clients may keep responses, but must revalidate them on every use
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private ConditionalResponses() {
+    }
+
+    static <T> CompletableFuture<ResponseEntity<T>> withETag(CompletableFuture<String> etag, WebRequest request,
+                                                             Supplier<CompletableFuture<ResponseEntity<T>>> loader) {
+        return etag.thenCompose(currentETag -> withETag(currentETag, request, loader));
+    }
+
+    private static <T> CompletableFuture<ResponseEntity<T>> withETag(String etag, WebRequest request,
+                                                                     Supplier<CompletableFuture<ResponseEntity<T>>> loader) {
+        String representationETag = forRepresentation(etag, request);
+        if (request.checkNotModified(representationETag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(representationETag).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT).build());
+        }
+
+        return loader.get().thenApply(response -> {
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
+            }
+            return ResponseEntity.status(response.getStatusCode())
+                    .headers(response.getHeaders())
+                    .eTag(representationETag)
+                    .cacheControl(REVALIDATE)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(response.getBody());
+        });
+    }
+
+    private static String forRepresentation(String etag, WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String fields = request.getParameter(FieldProjectionAdvice.FIELDS_PARAMETER);
+        if (accept == null && fields == null) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + Integer.toHexString(Objects.hash(accept, fields)) + "\"";
+    }
+}
@@ -0,0 +1,87 @@
+package com.smartfit.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.smartfit.model.CheckinEntry;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies a {@code ?fields=title,type,timestamp} projection to every check-in in a response, in any format, so list
+ * payloads only carry what the client displays. The id is always included; unknown names are ignored.
+ *
+ * The filters of each projection are built once and reused. Jackson keeps its serializers per type anyway, so a
+ * projected response costs a set lookup per property rather than any reflection.
+ */
+@ControllerAdvice
+public class FieldProjectionAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String FIELDS_PARAMETER = "fields";
+
+    private final Set<String> entryProperties = new TreeSet<>();
+    private final Map<Set<String>, FilterProvider> projections = new ConcurrentHashMap<>();
+
+    public FieldProjectionAdvice(ObjectMapper objectMapper) {
+        for (BeanPropertyDefinition property : objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(CheckinEntry.class)).findProperties()) {
+            entryProperties.add(property.getName());
+        }
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || !(request instanceof ServletServerHttpRequest servletRequest)) {
+            return body;
+        }
+        String fields = servletRequest.getServletRequest().getParameter(FIELDS_PARAMETER);
+        if (fields == null || fields.isBlank()) {
+            return body;
+        }
+
+        MappingJacksonValue container = body instanceof MappingJacksonValue value ? value : new MappingJacksonValue(body);
+        container.setFilters(projections.computeIfAbsent(requestedProperties(fields), FieldProjectionAdvice::filtersFor));
+        return container;
+    }
+
+    // Only known names end up in the key, which bounds the number of projections kept
+    private Set<String> requestedProperties(String fields) {
+        Set<String> properties = new TreeSet<>();
+        properties.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (entryProperties.contains(name)) {
+                properties.add(name);
+            }
+        }
+        return properties;
+    }
+
+    private static FilterProvider filtersFor(Set<String> properties) {
+        return new SimpleFilterProvider()
+                .addFilter(CheckinEntry.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(properties))
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+    }
+}
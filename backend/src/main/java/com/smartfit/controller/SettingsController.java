@@ -1,13 +1,15 @@
 package com.smartfit.controller;
 
 import com.smartfit.model.UserSettings;
-import com.smartfit.service.FirebaseService;
 import com.smartfit.service.SettingsService;
+import com.smartfit.service.UserDataVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/settings")
@@ -15,66 +17,51 @@ import java.util.concurrent.ExecutionException;
 public class SettingsController {
 
     private final SettingsService settingsService;
-    private final FirebaseService firebaseService;
+    private final UserDataVersionService userDataVersionService;
 
     @Autowired
-    public SettingsController(SettingsService settingsService, FirebaseService firebaseService) {
+    public SettingsController(SettingsService settingsService, UserDataVersionService userDataVersionService) {
         this.settingsService = settingsService;
-        this.firebaseService = firebaseService;
+        this.userDataVersionService = userDataVersionService;
     }
 
     @GetMapping
-    public ResponseEntity<UserSettings> getUserSettings(@RequestHeader("Authorization") String authHeader) {
-        try {
-            String idToken = authHeader.replace("Bearer ", "");
-            String userId = firebaseService.getUserIdFromToken(idToken);
+    public CompletableFuture<ResponseEntity<UserSettings>> getUserSettings(Authentication authentication,
+                                                                           WebRequest request) {
+        // The token was already verified by JwtAuthenticationFilter
+        String userId = authentication.getName();
 
-            UserSettings settings = settingsService.getUserSettings(userId);
-            return ResponseEntity.ok(settings);
-        } catch (ExecutionException | InterruptedException e) {
-            return ResponseEntity.internalServerError().build();
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return ConditionalResponses.withETag(userDataVersionService.etag(userId), request,
+                () -> settingsService.getUserSettings(userId)
+                        .thenApply(ResponseEntity::ok)
+                        .exceptionally(e -> ResponseEntity.internalServerError().build()));
     }
 
     @PostMapping
-    public ResponseEntity<UserSettings> saveUserSettings(
-            @RequestHeader("Authorization") String authHeader,
+    public CompletableFuture<ResponseEntity<UserSettings>> saveUserSettings(
+            Authentication authentication,
             @RequestBody UserSettings settings) {
-        try {
-            String idToken = authHeader.replace("Bearer ", "");
-            String userId = firebaseService.getUserIdFromToken(idToken);
+        String userId = authentication.getName();
 
-            // Ensure the settings belong to the authenticated user
-            settings.setUserId(userId);
+        // Ensure the settings belong to the authenticated user
+        settings.setUserId(userId);
 
-            UserSettings savedSettings = settingsService.saveUserSettings(settings);
-            return ResponseEntity.ok(savedSettings);
-        } catch (ExecutionException | InterruptedException e) {
-            return ResponseEntity.internalServerError().build();
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return settingsService.saveUserSettings(settings)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> ResponseEntity.internalServerError().build());
     }
 
     @PutMapping
-    public ResponseEntity<UserSettings> updateUserSettings(
-            @RequestHeader("Authorization") String authHeader,
+    public CompletableFuture<ResponseEntity<UserSettings>> updateUserSettings(
+            Authentication authentication,
             @RequestBody UserSettings settings) {
-        try {
-            String idToken = authHeader.replace("Bearer ", "");
-            String userId = firebaseService.getUserIdFromToken(idToken);
+        String userId = authentication.getName();
 
-            // Ensure the settings belong to the authenticated user
-            settings.setUserId(userId);
+        // Ensure the settings belong to the authenticated user
+        settings.setUserId(userId);
 
-            UserSettings savedSettings = settingsService.saveUserSettings(settings);
-            return ResponseEntity.ok(savedSettings);
-        } catch (ExecutionException | InterruptedException e) {
-            return ResponseEntity.internalServerError().build();
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+        return settingsService.saveUserSettings(settings)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> ResponseEntity.internalServerError().build());
     }
-}
\ No newline at end of file
+}
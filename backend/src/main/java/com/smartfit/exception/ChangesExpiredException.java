@@ -0,0 +1,12 @@
+package com.smartfit.exception;
+
+/**
+ * The sync cursor is older than the retained deletion tombstones, so the changes since it can no longer be listed
+ * completely. The client has to fetch everything again.
+ */
+public class ChangesExpiredException extends RuntimeException {
+
+    public ChangesExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.smartfit.exception;
+
+/**
+ * A conditional write expected a version of the entry that is no longer current.
+ */
+public class EntryConflictException extends RuntimeException {
+
+    public EntryConflictException(String message) {
+        super(message);
+    }
+}
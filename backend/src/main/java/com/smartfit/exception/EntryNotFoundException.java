@@ -0,0 +1,8 @@
+package com.smartfit.exception;
+
+public class EntryNotFoundException extends RuntimeException {
+
+    public EntryNotFoundException(String message) {
+        super(message);
+    }
+}
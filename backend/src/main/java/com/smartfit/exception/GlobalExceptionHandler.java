@@ -1,7 +1,9 @@
 package com.smartfit.exception;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -54,6 +56,96 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<ValidationErrorResponse> handleHttpMessageNotReadableException(
+            HttpMessageNotReadableException ex) {
+
+        String error = "Malformed request body";
+        if (ex.getCause() instanceof JsonMappingException mappingException) {
+            String field = mappingException.getPath().stream()
+                    .map(reference -> reference.getFieldName() != null
+                            ? reference.getFieldName() : "[" + reference.getIndex() + "]")
+                    .collect(Collectors.joining("."));
+            error = field.isEmpty()
+                    ? mappingException.getOriginalMessage()
+                    : field + ": " + mappingException.getOriginalMessage();
+        }
+
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Validation failed", 
+            List.of(error), 
+            HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ValidationErrorResponse> handleInvalidCursorException(InvalidCursorException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Invalid request", 
+            List.of(ex.getMessage()), 
+            HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidSeriesException.class)
+    public ResponseEntity<ValidationErrorResponse> handleInvalidSeriesException(InvalidSeriesException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Invalid request", 
+            List.of(ex.getMessage()), 
+            HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidTimeZoneException.class)
+    public ResponseEntity<ValidationErrorResponse> handleInvalidTimeZoneException(InvalidTimeZoneException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Invalid request", 
+            List.of(ex.getMessage()), 
+            HttpStatus.BAD_REQUEST.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(EntryNotFoundException.class)
+    public ResponseEntity<ValidationErrorResponse> handleEntryNotFoundException(EntryNotFoundException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Not found", 
+            List.of(ex.getMessage()), 
+            HttpStatus.NOT_FOUND.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(EntryConflictException.class)
+    public ResponseEntity<ValidationErrorResponse> handleEntryConflictException(EntryConflictException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Conflict", 
+            List.of(ex.getMessage()), 
+            HttpStatus.CONFLICT.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ChangesExpiredException.class)
+    public ResponseEntity<ValidationErrorResponse> handleChangesExpiredException(ChangesExpiredException ex) {
+        ValidationErrorResponse errorResponse = new ValidationErrorResponse(
+            "Changes expired", 
+            List.of(ex.getMessage()), 
+            HttpStatus.GONE.value()
+        );
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.GONE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ValidationErrorResponse> handleGenericException(Exception ex) {
         List<String> errors = List.of(ex.getMessage());
@@ -0,0 +1,11 @@
+package com.smartfit.exception;
+
+/**
+ * A chart series was requested for an unknown period or metric.
+ */
+public class InvalidSeriesException extends RuntimeException {
+
+    public InvalidSeriesException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.smartfit.exception;
+
+/**
+ * Settings were saved with a time zone that is not a known zone id.
+ */
+public class InvalidTimeZoneException extends RuntimeException {
+
+    public InvalidTimeZoneException(String message) {
+        super(message);
+    }
+}
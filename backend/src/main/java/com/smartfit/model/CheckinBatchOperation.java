@@ -0,0 +1,47 @@
+package com.smartfit.model;
+
+/**
+ * One create, update or delete of a {@code POST /api/checkin/batch} request.
+ */
+public class CheckinBatchOperation {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private Type op;
+
+    // Required for UPDATE and DELETE
+    private String id;
+
+    // Required for CREATE and UPDATE
+    private CheckinEntry entry;
+
+    public CheckinBatchOperation() {
+    }
+
+    // Getters and Setters
+    public Type getOp() {
+        return op;
+    }
+
+    public void setOp(Type op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public CheckinEntry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(CheckinEntry entry) {
+        this.entry = entry;
+    }
+}
@@ -0,0 +1,84 @@
+package com.smartfit.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Outcome of one operation of a batch, reported with the HTTP status it would have had on its own.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CheckinBatchResult {
+
+    private int index;
+    private CheckinBatchOperation.Type op;
+    private String id;
+    private int status;
+    private CheckinEntry entry;
+    private List<String> errors;
+
+    public CheckinBatchResult() {
+    }
+
+    public CheckinBatchResult(int index, CheckinBatchOperation.Type op, String id, int status) {
+        this.index = index;
+        this.op = op;
+        this.id = id;
+        this.status = status;
+    }
+
+    public static CheckinBatchResult failed(int index, CheckinBatchOperation operation, int status, List<String> errors) {
+        CheckinBatchResult result = new CheckinBatchResult(index, operation.getOp(), operation.getId(), status);
+        result.setErrors(errors);
+        return result;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public CheckinBatchOperation.Type getOp() {
+        return op;
+    }
+
+    public void setOp(CheckinBatchOperation.Type op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public CheckinEntry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(CheckinEntry entry) {
+        this.entry = entry;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
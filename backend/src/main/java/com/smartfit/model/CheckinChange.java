@@ -0,0 +1,52 @@
+package com.smartfit.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One change to a user's check-ins. {@code entry} is the new state, absent for removals.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CheckinChange {
+
+    private Type type;
+    private String id;
+    private CheckinEntry entry;
+
+    public enum Type {
+        ADDED, MODIFIED, REMOVED
+    }
+
+    public CheckinChange() {
+    }
+
+    public CheckinChange(Type type, String id, CheckinEntry entry) {
+        this.type = type;
+        this.id = id;
+        this.entry = entry;
+    }
+
+    // Getters and Setters
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public CheckinEntry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(CheckinEntry entry) {
+        this.entry = entry;
+    }
+}
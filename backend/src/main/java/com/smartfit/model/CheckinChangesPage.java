@@ -0,0 +1,48 @@
+package com.smartfit.model;
+
+import java.util.List;
+
+/**
+ * Changes to a user's check-ins in the order they were made, oldest first. {@code cursor} is passed back as
+ * {@code since} to get the changes after these; {@code hasMore} says whether more are already waiting.
+ */
+public class CheckinChangesPage {
+
+    private List<CheckinChange> changes;
+    private String cursor;
+    private boolean hasMore;
+
+    public CheckinChangesPage() {
+    }
+
+    public CheckinChangesPage(List<CheckinChange> changes, String cursor, boolean hasMore) {
+        this.changes = changes;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<CheckinChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<CheckinChange> changes) {
+        this.changes = changes;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -1,14 +1,21 @@
 package com.smartfit.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.smartfit.config.CheckinEntryDeserializer;
 import com.smartfit.validation.ValidCheckinEntry;
 import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 @JsonDeserialize(using = CheckinEntryDeserializer.class)
+@JsonFilter(CheckinEntry.FIELDS_FILTER)
 @ValidCheckinEntry
 public class CheckinEntry {
+
+    // Narrowed by ?fields= projections, see FieldProjectionAdvice
+    public static final String FIELDS_FILTER = "checkinEntryFields";
     
     private String id;
     
@@ -34,8 +41,18 @@ public class CheckinEntry {
     @Positive(message = "Water amount must be a positive number")
     private Integer water;
     
+    // Wall clock in timeZone, see CheckinZones
     private LocalDateTime timestamp;
     
+    // yyyyMMdd date of the timestamp, the day the check-in counts for
+    private Integer dayKey;
+    
+    private String timeZone;
+    
+    // Offset the client sent the timestamp with, until it is moved into the user's zone
+    @JsonIgnore
+    private ZoneOffset timestampOffset;
+    
     private LocalDateTime createdAt;
     
     private LocalDateTime updatedAt;
@@ -130,6 +147,30 @@ public class CheckinEntry {
         this.timestamp = timestamp;
     }
     
+    public Integer getDayKey() {
+        return dayKey;
+    }
+    
+    public void setDayKey(Integer dayKey) {
+        this.dayKey = dayKey;
+    }
+    
+    public String getTimeZone() {
+        return timeZone;
+    }
+    
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+    
+    public ZoneOffset getTimestampOffset() {
+        return timestampOffset;
+    }
+    
+    public void setTimestampOffset(ZoneOffset timestampOffset) {
+        this.timestampOffset = timestampOffset;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,37 @@
+package com.smartfit.model;
+
+import java.util.List;
+
+/**
+ * One page of check-ins, newest first. {@code nextCursor} is null on the last page.
+ */
+public class CheckinPage {
+
+    private List<CheckinEntry> entries;
+    private String nextCursor;
+
+    public CheckinPage() {
+    }
+
+    public CheckinPage(List<CheckinEntry> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<CheckinEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<CheckinEntry> entries) {
+        this.entries = entries;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartfit.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One metric of a user's check-ins over a chart period, bucketed per day (weekly, monthly) or per month (yearly).
+ * Weight series have one point per day with a weigh-in instead, downsampled to a bounded number of points.
+ */
+public class CheckinSeries {
+
+    private Period period;
+    private Metric metric;
+    private List<Point> points;
+
+    public enum Period {
+        WEEKLY, MONTHLY, YEARLY;
+
+        /**
+         * Case-insensitive lookup, null for unknown names.
+         */
+        public static Period of(String name) {
+            for (Period period : values()) {
+                if (period.name().equals(name.toUpperCase(Locale.ROOT))) {
+                    return period;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Metric {
+        WORKOUTS, CALORIES, DURATION, WATER, WEIGHT;
+
+        /**
+         * Case-insensitive lookup, null for unknown names.
+         */
+        public static Metric of(String name) {
+            for (Metric metric : values()) {
+                if (metric.name().equals(name.toUpperCase(Locale.ROOT))) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+
+    public CheckinSeries() {
+    }
+
+    public CheckinSeries(Period period, Metric metric, List<Point> points) {
+        this.period = period;
+        this.metric = metric;
+        this.points = points;
+    }
+
+    // Getters and Setters
+    public Period getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(Period period) {
+        this.period = period;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<Point> points) {
+        this.points = points;
+    }
+
+    /**
+     * The value of one bucket, dated by its first day, or one weigh-in.
+     */
+    public static class Point {
+        private LocalDate date;
+        private double value;
+
+        public Point() {
+        }
+
+        public Point(LocalDate date, double value) {
+            this.date = date;
+            this.value = value;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public void setDate(LocalDate date) {
+            this.date = date;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+}
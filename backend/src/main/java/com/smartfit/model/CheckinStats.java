@@ -0,0 +1,100 @@
+package com.smartfit.model;
+
+public class CheckinStats {
+
+    private long workouts;
+    private long exercises;
+    private long meals;
+    private long weights;
+    private long water;
+
+    private long totalCalories;
+    private long workoutMinutes;
+    private long totalWater;
+    private Double averageWeight;
+    private Double lastWeight;
+
+    public CheckinStats() {
+    }
+
+    // Getters and Setters
+    public long getWorkouts() {
+        return workouts;
+    }
+
+    public void setWorkouts(long workouts) {
+        this.workouts = workouts;
+    }
+
+    public long getExercises() {
+        return exercises;
+    }
+
+    public void setExercises(long exercises) {
+        this.exercises = exercises;
+    }
+
+    public long getMeals() {
+        return meals;
+    }
+
+    public void setMeals(long meals) {
+        this.meals = meals;
+    }
+
+    public long getWeights() {
+        return weights;
+    }
+
+    public void setWeights(long weights) {
+        this.weights = weights;
+    }
+
+    public long getWater() {
+        return water;
+    }
+
+    public void setWater(long water) {
+        this.water = water;
+    }
+
+    public long getTotalCalories() {
+        return totalCalories;
+    }
+
+    public void setTotalCalories(long totalCalories) {
+        this.totalCalories = totalCalories;
+    }
+
+    public long getWorkoutMinutes() {
+        return workoutMinutes;
+    }
+
+    public void setWorkoutMinutes(long workoutMinutes) {
+        this.workoutMinutes = workoutMinutes;
+    }
+
+    public long getTotalWater() {
+        return totalWater;
+    }
+
+    public void setTotalWater(long totalWater) {
+        this.totalWater = totalWater;
+    }
+
+    public Double getAverageWeight() {
+        return averageWeight;
+    }
+
+    public void setAverageWeight(Double averageWeight) {
+        this.averageWeight = averageWeight;
+    }
+
+    public Double getLastWeight() {
+        return lastWeight;
+    }
+
+    public void setLastWeight(Double lastWeight) {
+        this.lastWeight = lastWeight;
+    }
+}
@@ -0,0 +1,87 @@
+package com.smartfit.model;
+
+import java.time.LocalDate;
+
+/**
+ * A user's streak of consecutive active days for one kind of check-in. The current run counts back from today, or
+ * from yesterday while today has no check-in yet, in which case the streak is running out.
+ */
+public class CheckinStreak {
+
+    private Type type;
+    private int current;
+    private int longest;
+    private LocalDate lastActiveDay;
+    private boolean runningOut;
+
+    public enum Type {
+        WORKOUT, WATER, WEIGHT;
+
+        /**
+         * The streak a check-in type counts towards, null for none. Exercises count as workouts.
+         */
+        public static Type of(CheckinEntry.CheckinType checkinType) {
+            if (checkinType == null) {
+                return null;
+            }
+            return switch (checkinType) {
+                case WORKOUT, EXERCISE -> WORKOUT;
+                case WATER -> WATER;
+                case WEIGHT -> WEIGHT;
+                case MEAL -> null;
+            };
+        }
+    }
+
+    public CheckinStreak() {
+    }
+
+    public CheckinStreak(Type type, int current, int longest, LocalDate lastActiveDay, boolean runningOut) {
+        this.type = type;
+        this.current = current;
+        this.longest = longest;
+        this.lastActiveDay = lastActiveDay;
+        this.runningOut = runningOut;
+    }
+
+    // Getters and Setters
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getCurrent() {
+        return current;
+    }
+
+    public void setCurrent(int current) {
+        this.current = current;
+    }
+
+    public int getLongest() {
+        return longest;
+    }
+
+    public void setLongest(int longest) {
+        this.longest = longest;
+    }
+
+    public LocalDate getLastActiveDay() {
+        return lastActiveDay;
+    }
+
+    public void setLastActiveDay(LocalDate lastActiveDay) {
+        this.lastActiveDay = lastActiveDay;
+    }
+
+    public boolean isRunningOut() {
+        return runningOut;
+    }
+
+    public void setRunningOut(boolean runningOut) {
+        this.runningOut = runningOut;
+    }
+}
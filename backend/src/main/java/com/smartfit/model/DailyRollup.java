@@ -0,0 +1,136 @@
+package com.smartfit.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-user, per-day totals of all check-ins, kept up to date on every write.
+ */
+public class DailyRollup {
+
+    private String userId;
+
+    // Day in yyyyMMdd form
+    private int day;
+
+    private Map<CheckinEntry.CheckinType, TypeTotals> totals = new EnumMap<>(CheckinEntry.CheckinType.class);
+
+    private Double lastWeight;
+
+    private LocalDateTime lastWeightAt;
+
+    @JsonIgnore
+    private String lastWeightEntryId;
+
+    public DailyRollup() {
+    }
+
+    public DailyRollup(String userId, int day) {
+        this.userId = userId;
+        this.day = day;
+    }
+
+    public TypeTotals getOrCreateTotals(CheckinEntry.CheckinType type) {
+        return totals.computeIfAbsent(type, t -> new TypeTotals());
+    }
+
+    // Getters and Setters
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public void setDay(int day) {
+        this.day = day;
+    }
+
+    public Map<CheckinEntry.CheckinType, TypeTotals> getTotals() {
+        return totals;
+    }
+
+    public void setTotals(Map<CheckinEntry.CheckinType, TypeTotals> totals) {
+        this.totals = totals;
+    }
+
+    public Double getLastWeight() {
+        return lastWeight;
+    }
+
+    public void setLastWeight(Double lastWeight) {
+        this.lastWeight = lastWeight;
+    }
+
+    public LocalDateTime getLastWeightAt() {
+        return lastWeightAt;
+    }
+
+    public void setLastWeightAt(LocalDateTime lastWeightAt) {
+        this.lastWeightAt = lastWeightAt;
+    }
+
+    public String getLastWeightEntryId() {
+        return lastWeightEntryId;
+    }
+
+    public void setLastWeightEntryId(String lastWeightEntryId) {
+        this.lastWeightEntryId = lastWeightEntryId;
+    }
+
+    public static class TypeTotals {
+        private long count;
+        private long calories;
+        private long duration;
+        private long water;
+        private double weight;
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public long getCalories() {
+            return calories;
+        }
+
+        public void setCalories(long calories) {
+            this.calories = calories;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public void setDuration(long duration) {
+            this.duration = duration;
+        }
+
+        public long getWater() {
+            return water;
+        }
+
+        public void setWater(long water) {
+            this.water = water;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public void setWeight(double weight) {
+            this.weight = weight;
+        }
+    }
+}
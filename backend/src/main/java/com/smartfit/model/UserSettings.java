@@ -20,6 +20,9 @@ public class UserSettings {
     @JsonProperty("waterEnabled")
     private boolean waterEnabled;
     
+    // IANA zone id, e.g. "Europe/Berlin"; days and check-in times follow it
+    private String timeZone;
+    
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -86,6 +89,14 @@ public class UserSettings {
         this.waterEnabled = waterEnabled;
     }
 
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -111,6 +122,7 @@ public class UserSettings {
                 ", mealEnabled=" + mealEnabled +
                 ", weightEnabled=" + weightEnabled +
                 ", waterEnabled=" + waterEnabled +
+                ", timeZone='" + timeZone + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
@@ -27,22 +27,18 @@ public class FirebaseAuthenticationProvider implements AuthenticationProvider {
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
         String token = authentication.getCredentials().toString();
         
-        if (firebaseService.isValidToken(token)) {
-            try {
-                String userId = firebaseService.getUserIdFromToken(token);
-                UserDetails userDetails = User.builder()
-                    .username(userId)
-                    .password("") // Firebase handles password
-                    .authorities(new ArrayList<>())
-                    .build();
-                
-                return new UsernamePasswordAuthenticationToken(userDetails, token, userDetails.getAuthorities());
-            } catch (Exception e) {
-                throw new BadCredentialsException("Invalid Firebase token");
-            }
+        String userId = firebaseService.getUserIdIfValid(token);
+        if (userId == null) {
+            throw new BadCredentialsException("Invalid Firebase token");
         }
-        
-        throw new BadCredentialsException("Invalid Firebase token");
+
+        UserDetails userDetails = User.builder()
+            .username(userId)
+            .password("") // Firebase handles password
+            .authorities(new ArrayList<>())
+            .build();
+
+        return new UsernamePasswordAuthenticationToken(userDetails, token, userDetails.getAuthorities());
     }
 
     @Override
@@ -33,8 +33,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String firebaseToken = getFirebaseTokenFromRequest(request);
 
-            if (firebaseToken != null && firebaseService.isValidToken(firebaseToken)) {
-                String userId = firebaseService.getUserIdFromToken(firebaseToken);
+            String userId = firebaseToken != null ? firebaseService.getUserIdIfValid(firebaseToken) : null;
+
+            if (userId != null) {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(userId);
                 
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
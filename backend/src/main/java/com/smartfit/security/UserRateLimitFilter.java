@@ -0,0 +1,59 @@
+package com.smartfit.security;
+
+import com.smartfit.service.UserRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits authenticated requests through {@link UserRateLimiter}, placed right after {@link JwtAuthenticationFilter}
+ * has identified the user. GET and HEAD spend the read budget, everything else the write budget. Throttled requests
+ * get 429 with Retry-After before any controller or Firestore work is done.
+ */
+@Component
+public class UserRateLimitFilter extends OncePerRequestFilter {
+
+    private final UserRateLimiter rateLimiter;
+
+    public UserRateLimitFilter(UserRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && !(authentication instanceof AnonymousAuthenticationToken)) {
+            long waitNanos = rateLimiter.acquire(authentication.getName(), !isRead(request));
+            if (waitNanos > 0) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds(waitNanos)));
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    // Whole seconds, rounded up so a client that waits as told gets its token
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.smartfit.service;
+
+import com.google.cloud.Timestamp;
+import com.smartfit.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the (timestamp, document id) of the last entry of a page, base64url encoded. Change
+ * listings use the update or deletion time as the timestamp.
+ */
+public record CheckinCursor(Timestamp timestamp, String documentId) implements Comparable<CheckinCursor> {
+
+    // Sorts after every generated document id, which only use letters and digits
+    private static final String AFTER_ALL_IDS = "~";
+
+    /**
+     * Cursor past every document at the given instant.
+     */
+    public static CheckinCursor endOf(Timestamp timestamp) {
+        return new CheckinCursor(timestamp, AFTER_ALL_IDS);
+    }
+
+    public String encode() {
+        String raw = timestamp.getSeconds() + "." + timestamp.getNanos() + ":" + documentId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CheckinCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int dot = raw.indexOf('.');
+            int colon = raw.indexOf(':');
+            if (dot < 0 || colon < dot || colon == raw.length() - 1) {
+                throw new InvalidCursorException("Invalid cursor: " + cursor);
+            }
+            Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(
+                    Long.parseLong(raw.substring(0, dot)), Integer.parseInt(raw.substring(dot + 1, colon)));
+            return new CheckinCursor(timestamp, raw.substring(colon + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    @Override
+    public int compareTo(CheckinCursor other) {
+        int result = timestamp.compareTo(other.timestamp);
+        return result != 0 ? result : documentId.compareTo(other.documentId);
+    }
+}
@@ -0,0 +1,148 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinSeries;
+import com.smartfit.model.DailyRollup;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds chart series from the daily rollups of a period in a single pass, replacing the bucketing the frontend
+ * used to do over the raw entries.
+ */
+public class CheckinSeriesEngine {
+
+    private CheckinSeriesEngine() {
+    }
+
+    /**
+     * First day of the period ending today: the last 7 or 30 days, or the last 12 calendar months.
+     */
+    public static LocalDate startOf(CheckinSeries.Period period, LocalDate today) {
+        return switch (period) {
+            case WEEKLY -> today.minusDays(6);
+            case MONTHLY -> today.minusDays(29);
+            case YEARLY -> today.withDayOfMonth(1).minusMonths(11);
+        };
+    }
+
+    /**
+     * Rollups must be ordered by day. Weight series are downsampled to at most {@code maxPoints} points.
+     */
+    public static CheckinSeries build(CheckinSeries.Period period, CheckinSeries.Metric metric, LocalDate today,
+                                      List<DailyRollup> rollups, int maxPoints) {
+        List<CheckinSeries.Point> points = metric == CheckinSeries.Metric.WEIGHT
+                ? downsample(weighIns(rollups), maxPoints)
+                : buckets(period, metric, today, rollups);
+        return new CheckinSeries(period, metric, points);
+    }
+
+    private static List<CheckinSeries.Point> buckets(CheckinSeries.Period period, CheckinSeries.Metric metric,
+                                                     LocalDate today, List<DailyRollup> rollups) {
+        boolean monthly = period == CheckinSeries.Period.YEARLY;
+        LocalDate start = startOf(period, today);
+
+        // Every bucket is present, empty ones with zero, so charts keep a fixed axis
+        List<CheckinSeries.Point> points = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(today); date = monthly ? date.plusMonths(1) : date.plusDays(1)) {
+            points.add(new CheckinSeries.Point(date, 0));
+        }
+
+        for (DailyRollup rollup : rollups) {
+            LocalDate date = DailyRollupService.dateOf(rollup.getDay());
+            if (date.isBefore(start) || date.isAfter(today)) {
+                continue;
+            }
+            long index = monthly ? ChronoUnit.MONTHS.between(start, date) : ChronoUnit.DAYS.between(start, date);
+            CheckinSeries.Point point = points.get((int) index);
+            point.setValue(point.getValue() + valueOf(rollup, metric));
+        }
+        return points;
+    }
+
+    // Same selections as the frontend charts: workouts include exercises, the sums cover every type
+    private static long valueOf(DailyRollup rollup, CheckinSeries.Metric metric) {
+        long value = 0;
+        for (Map.Entry<CheckinEntry.CheckinType, DailyRollup.TypeTotals> totals : rollup.getTotals().entrySet()) {
+            DailyRollup.TypeTotals typeTotals = totals.getValue();
+            value += switch (metric) {
+                case WORKOUTS -> totals.getKey() == CheckinEntry.CheckinType.WORKOUT
+                        || totals.getKey() == CheckinEntry.CheckinType.EXERCISE ? typeTotals.getCount() : 0;
+                case CALORIES -> typeTotals.getCalories();
+                case DURATION -> typeTotals.getDuration();
+                case WATER -> typeTotals.getWater();
+                case WEIGHT -> 0;
+            };
+        }
+        return value;
+    }
+
+    private static List<CheckinSeries.Point> weighIns(List<DailyRollup> rollups) {
+        List<CheckinSeries.Point> points = new ArrayList<>();
+        for (DailyRollup rollup : rollups) {
+            if (rollup.getLastWeight() != null) {
+                points.add(new CheckinSeries.Point(DailyRollupService.dateOf(rollup.getDay()), rollup.getLastWeight()));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last point and, from each of the buckets in between, the
+     * point spanning the largest triangle with the previously kept point and the average of the next bucket. This
+     * keeps peaks and dips that plain averaging would flatten.
+     */
+    static List<CheckinSeries.Point> downsample(List<CheckinSeries.Point> points, int threshold) {
+        int size = points.size();
+        if (threshold < 3 || size <= threshold) {
+            return points;
+        }
+
+        List<CheckinSeries.Point> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int kept = 0;
+        sampled.add(points.get(0));
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x(points.get(i));
+                averageY += points.get(i).getValue();
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            double keptX = x(points.get(kept));
+            double keptY = points.get(kept).getValue();
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                CheckinSeries.Point point = points.get(i);
+                double area = Math.abs((keptX - averageX) * (point.getValue() - keptY)
+                        - (keptX - x(point)) * (averageY - keptY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            sampled.add(points.get(chosen));
+            kept = chosen;
+        }
+
+        sampled.add(points.get(size - 1));
+        return sampled;
+    }
+
+    private static double x(CheckinSeries.Point point) {
+        return point.getDate().toEpochDay();
+    }
+}
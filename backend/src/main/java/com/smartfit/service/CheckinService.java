@@ -1,86 +1,340 @@
 package com.smartfit.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.smartfit.exception.ChangesExpiredException;
+import com.smartfit.exception.EntryConflictException;
+import com.smartfit.exception.EntryNotFoundException;
+import com.smartfit.exception.InvalidSeriesException;
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChange;
+import com.smartfit.model.CheckinChangesPage;
 import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinSeries;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 @Service
 public class CheckinService {
 
-    private final FirebaseFirestoreService firebaseFirestoreService;
+    private final CheckinStore checkinStore;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final UserDataVersionService userDataVersionService;
+    private final ReadCoalescer readCoalescer;
+    private final SettingsService settingsService;
+    private final ZoneId defaultZone;
+    private final Duration changesSettleTime;
+    private final Duration tombstoneRetention;
+    private final int defaultSeriesPoints;
+
+    public static final int MAX_BATCH_OPERATIONS = 200;
+    public static final int MAX_IDS_PER_REQUEST = 500;
+    public static final int DEFAULT_CHANGES_PER_REQUEST = 500;
+    public static final int MAX_CHANGES_PER_REQUEST = 1000;
+    public static final int MAX_SERIES_POINTS = 1000;
 
     @Autowired
-    public CheckinService(FirebaseFirestoreService firebaseFirestoreService) {
-        this.firebaseFirestoreService = firebaseFirestoreService;
+    public CheckinService(CheckinStore checkinStore, ObjectMapper objectMapper, Validator validator,
+                          UserDataVersionService userDataVersionService, ReadCoalescer readCoalescer,
+                          SettingsService settingsService,
+                          @Value("${checkin.default-time-zone:UTC}") ZoneId defaultZone,
+                          @Value("${checkin.changes.settle-time:5s}") Duration changesSettleTime,
+                          @Value("${checkin.changes.tombstone-retention:30d}") Duration tombstoneRetention,
+                          @Value("${checkin.series.weight-points:100}") int defaultSeriesPoints) {
+        this.checkinStore = checkinStore;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.userDataVersionService = userDataVersionService;
+        this.readCoalescer = readCoalescer;
+        this.settingsService = settingsService;
+        this.defaultZone = defaultZone;
+        this.changesSettleTime = changesSettleTime;
+        this.tombstoneRetention = tombstoneRetention;
+        this.defaultSeriesPoints = defaultSeriesPoints;
     }
 
-    public List<CheckinEntry> getAllEntriesByUserId(String userId) {
-        try {
-            return firebaseFirestoreService.getAllEntriesByUserId(userId);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to get entries", e);
-        }
+    public CompletableFuture<CheckinPage> getAllEntriesByUserId(String userId, Integer limit, String startAfter) {
+        return failWith(readCoalescer.read("getEntries", userId,
+                () -> checkinStore.getAllEntriesByUserId(userId, limit, startAfter), limit, startAfter),
+                "Failed to get entries");
     }
 
-    public List<CheckinEntry> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type) {
-        try {
-            return firebaseFirestoreService.getEntriesByUserIdAndType(userId, type);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to get entries by type", e);
-        }
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type,
+                                                                    Integer limit, String startAfter) {
+        return failWith(readCoalescer.read("getEntriesByType", userId,
+                () -> checkinStore.getEntriesByUserIdAndType(userId, type, limit, startAfter), type, limit, startAfter),
+                "Failed to get entries by type");
     }
 
-    public List<CheckinEntry> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate) {
-        try {
-            return firebaseFirestoreService.getEntriesByUserIdAndDateRange(userId, startDate, endDate);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to get entries by date range", e);
-        }
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate, Integer limit,
+                                                                         String startAfter) {
+        return failWith(zoneOf(userId).thenCompose(zone -> readCoalescer.read("getEntriesByDateRange", userId,
+                () -> checkinStore.getEntriesByUserIdAndDateRange(userId, startDate, endDate, zone, limit, startAfter),
+                startDate, endDate, zone, limit, startAfter)), "Failed to get entries by date range");
     }
 
-    public CheckinEntry createEntry(CheckinEntry entry) {
-        try {
-            return firebaseFirestoreService.createEntry(entry);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to create entry", e);
+    /**
+     * Changes after the {@code since} cursor, or every entry when it is absent, for clients that keep a local copy.
+     *
+     * Update times are taken before the write commits, so a change can become visible slightly after later ones.
+     * The last page therefore returns a cursor at the settle time before now rather than at its last change; the
+     * changes after it are delivered again on the next call, which clients apply idempotently. Cursors older than
+     * the tombstone retention are rejected, since deletions before it may already be forgotten.
+     */
+    public CompletableFuture<CheckinChangesPage> getChanges(String userId, String since, Integer limit) {
+        Instant now = Instant.now();
+        CheckinCursor sinceCursor = since != null && !since.isEmpty() ? CheckinCursor.decode(since) : null;
+        if (sinceCursor != null && sinceCursor.timestamp().toDate().toInstant().isBefore(now.minus(tombstoneRetention))) {
+            throw new ChangesExpiredException("Changes since this cursor are no longer available, fetch all entries again");
         }
+
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_CHANGES_PER_REQUEST)) : DEFAULT_CHANGES_PER_REQUEST;
+        Instant settledAt = now.minus(changesSettleTime);
+        CheckinCursor settled = CheckinCursor.endOf(
+                Timestamp.ofTimeSecondsAndNanos(settledAt.getEpochSecond(), settledAt.getNano()));
+
+        return failWith(checkinStore.getChangesByUserId(userId, sinceCursor, pageSize), "Failed to get changes")
+                .thenApply(page -> {
+                    for (CheckinChange change : page.getChanges()) {
+                        if (change.getType() == CheckinChange.Type.MODIFIED
+                                && createdAfter(change.getEntry(), sinceCursor)) {
+                            change.setType(CheckinChange.Type.ADDED);
+                        }
+                    }
+
+                    if (!page.isHasMore()) {
+                        // Everything up to now has been listed, a cursor never moves backwards
+                        CheckinCursor next = sinceCursor != null && sinceCursor.compareTo(settled) > 0 ? sinceCursor : settled;
+                        page.setCursor(next.encode());
+                    }
+                    return page;
+                });
+    }
+
+    private static boolean createdAfter(CheckinEntry entry, CheckinCursor since) {
+        return since == null || entry.getCreatedAt() == null
+                || entry.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant()
+                        .isAfter(since.timestamp().toDate().toInstant());
     }
 
-    public Optional<CheckinEntry> getEntryById(String id) {
-        try {
-            return firebaseFirestoreService.getEntryById(id);
+    /**
+     * Writes every entry of the user to the stream as newline-delimited JSON, without ever holding the whole history.
+     */
+    public void exportEntries(String userId, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            checkinStore.forEachEntryByUserId(userId, entry -> {
+                generator.writeObject(entry);
+                generator.writeRaw('\n');
+            });
+            generator.flush();
         } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to get entry by id", e);
+            throw new RuntimeException("Failed to export entries", e);
         }
     }
 
-    public CheckinEntry updateEntry(String id, CheckinEntry updatedEntry) {
-        try {
-            return firebaseFirestoreService.updateEntry(id, updatedEntry);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to update entry", e);
+    public CompletableFuture<CheckinEntry> createEntry(CheckinEntry entry) {
+        return bumpVersion(entry.getUserId(), failWith(zoneOf(entry.getUserId()).thenCompose(zone -> {
+            CheckinZones.assign(entry, zone);
+            return checkinStore.createEntry(entry);
+        }), "Failed to create entry"));
+    }
+
+    public CompletableFuture<Optional<CheckinEntry>> getEntryById(String id) {
+        return failWith(checkinStore.getEntryById(id), "Failed to get entry by id");
+    }
+
+    public CompletableFuture<List<CheckinEntry>> getEntriesByIds(String userId, List<String> ids) {
+        List<String> distinctIds = ids.stream().distinct().toList();
+        return failWith(readCoalescer.read("getEntriesByIds", userId,
+                () -> checkinStore.getEntriesByIds(userId, distinctIds), distinctIds), "Failed to get entries by ids");
+    }
+
+    /**
+     * Validates every operation on its own and commits the valid ones together. The result list has one entry per
+     * operation, in request order.
+     */
+    public CompletableFuture<List<CheckinBatchResult>> applyBatch(String userId, List<CheckinBatchOperation> operations) {
+        CheckinBatchResult[] results = new CheckinBatchResult[operations.size()];
+        Map<Integer, CheckinBatchOperation> valid = new LinkedHashMap<>();
+        Set<String> seenIds = new HashSet<>();
+
+        for (int i = 0; i < operations.size(); i++) {
+            CheckinBatchOperation operation = operations.get(i);
+            List<String> errors = validateOperation(operation, seenIds);
+            if (errors.isEmpty()) {
+                valid.put(i, operation);
+            } else {
+                results[i] = CheckinBatchResult.failed(i, operation, 400, errors);
+            }
+        }
+
+        if (valid.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
         }
+
+        return bumpVersion(userId, failWith(zoneOf(userId).thenCompose(zone -> {
+                    for (CheckinBatchOperation operation : valid.values()) {
+                        if (operation.getEntry() != null) {
+                            CheckinZones.assign(operation.getEntry(), zone);
+                        }
+                    }
+                    return checkinStore.applyBatch(userId, valid);
+                }), "Failed to apply batch"))
+                .thenApply(applied -> {
+                    applied.forEach((index, result) -> results[index] = result);
+                    return Arrays.asList(results);
+                });
     }
 
-    public void deleteEntry(String id) {
-        try {
-            firebaseFirestoreService.deleteEntry(id);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to delete entry", e);
+    private List<String> validateOperation(CheckinBatchOperation operation, Set<String> seenIds) {
+        List<String> errors = new ArrayList<>();
+        if (operation.getOp() == null) {
+            errors.add("op: must be one of " + Arrays.toString(CheckinBatchOperation.Type.values()));
+            return errors;
         }
+
+        if (operation.getOp() != CheckinBatchOperation.Type.CREATE) {
+            if (operation.getId() == null || operation.getId().isEmpty()) {
+                errors.add("id: is required for " + operation.getOp());
+            } else if (!seenIds.add(operation.getId())) {
+                errors.add("id: appears more than once in the batch");
+            }
+        }
+
+        if (operation.getOp() != CheckinBatchOperation.Type.DELETE) {
+            if (operation.getEntry() == null) {
+                errors.add("entry: is required for " + operation.getOp());
+            } else {
+                for (ConstraintViolation<CheckinEntry> violation : validator.validate(operation.getEntry())) {
+                    String path = violation.getPropertyPath().toString();
+                    errors.add(path.isEmpty() ? violation.getMessage() : path + ": " + violation.getMessage());
+                }
+            }
+        }
+        return errors;
     }
 
-    public long getEntryCountByTypeAndDateRange(String userId, CheckinEntry.CheckinType type, 
-                                               LocalDateTime startDate, LocalDateTime endDate) {
-        try {
-            return firebaseFirestoreService.getEntryCountByTypeAndDateRange(userId, type, startDate, endDate);
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException("Failed to get entry count", e);
+    /**
+     * Updates an entry of the user in one round trip. With an expected version from {@link CheckinVersions} the
+     * write only goes through if the entry is still at that version.
+     */
+    public CompletableFuture<CheckinEntry> updateEntry(String userId, String id, CheckinEntry updatedEntry,
+                                                       Long expectedVersion) {
+        return bumpVersion(userId, failWith(zoneOf(userId).thenCompose(zone -> {
+            CheckinZones.assign(updatedEntry, zone);
+            return checkinStore.updateEntry(userId, id, updatedEntry, expectedVersion);
+        }), "Failed to update entry"));
+    }
+
+    public CompletableFuture<Void> deleteEntry(String userId, String id, Long expectedVersion) {
+        return bumpVersion(userId,
+                failWith(checkinStore.deleteEntry(userId, id, expectedVersion), "Failed to delete entry"));
+    }
+
+    public CompletableFuture<CheckinStats> getStatsByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                        LocalDateTime endDate) {
+        return failWith(zoneOf(userId).thenCompose(zone -> readCoalescer.read("getStats", userId,
+                () -> checkinStore.getStatsByUserIdAndDateRange(userId, startDate, endDate, zone),
+                startDate, endDate, zone)), "Failed to get stats");
+    }
+
+    public CompletableFuture<List<DailyRollup>> getDailyRollups(String userId, LocalDate startDate, LocalDate endDate) {
+        return failWith(getRollups(userId, startDate, endDate), "Failed to get daily rollups");
+    }
+
+    public CompletableFuture<List<CheckinStreak>> getStreaks(String userId) {
+        return failWith(zoneOf(userId).thenCompose(zone -> {
+            LocalDate today = LocalDate.now(zone);
+            return readCoalescer.read("getStreaks", userId, () -> checkinStore.getStreaks(userId, today), today);
+        }), "Failed to get streaks");
+    }
+
+    /**
+     * The user's current date, in the zone from their settings.
+     */
+    public CompletableFuture<LocalDate> getToday(String userId) {
+        return failWith(zoneOf(userId).thenApply(LocalDate::now), "Failed to get the user's date");
+    }
+
+    /**
+     * Chart series of one metric over the period ending {@code today}, the user's date from {@link #getToday},
+     * computed from the daily rollups. {@code points} bounds the number of weight points, which are otherwise one per
+     * day with a weigh-in.
+     */
+    public CompletableFuture<CheckinSeries> getSeries(String userId, LocalDate today, String period, String metric,
+                                                      Integer points) {
+        CheckinSeries.Period seriesPeriod = CheckinSeries.Period.of(period);
+        if (seriesPeriod == null) {
+            throw new InvalidSeriesException("period: must be one of " + Arrays.toString(CheckinSeries.Period.values()));
+        }
+        CheckinSeries.Metric seriesMetric = CheckinSeries.Metric.of(metric);
+        if (seriesMetric == null) {
+            throw new InvalidSeriesException("metric: must be one of " + Arrays.toString(CheckinSeries.Metric.values()));
         }
+        int maxPoints = points != null ? Math.max(3, Math.min(points, MAX_SERIES_POINTS)) : defaultSeriesPoints;
+
+        LocalDate startDate = CheckinSeriesEngine.startOf(seriesPeriod, today);
+        return failWith(getRollups(userId, startDate, today).thenApply(rollups ->
+                CheckinSeriesEngine.build(seriesPeriod, seriesMetric, today, rollups, maxPoints)), "Failed to get series");
+    }
+
+    // Rollup reads of the dashboard and the charts share one flight when their ranges match
+    private CompletableFuture<List<DailyRollup>> getRollups(String userId, LocalDate startDate, LocalDate endDate) {
+        int startDay = DailyRollupService.dayOf(startDate.atStartOfDay());
+        int endDay = DailyRollupService.dayOf(endDate.atStartOfDay());
+        return readCoalescer.read("getDailyRollups", userId,
+                () -> checkinStore.getDailyRollups(userId, startDay, endDay), startDay, endDay);
+    }
+
+    // Days and wall-clock ranges are the user's, from the zone in their settings
+    private CompletableFuture<ZoneId> zoneOf(String userId) {
+        return settingsService.getUserSettings(userId)
+                .thenApply(settings -> CheckinZones.parse(settings.getTimeZone(), defaultZone));
+    }
+
+    // Also bumped on failure, the write may have been committed anyway
+    private <T> CompletableFuture<T> bumpVersion(String userId, CompletableFuture<T> write) {
+        return write.whenComplete((result, error) -> userDataVersionService.bump(userId));
+    }
+
+    // Same wrapping as the blocking calls had; Spring unwraps the CompletionException around it
+    private static <T> CompletableFuture<T> failWith(CompletableFuture<T> future, String message) {
+        return future.exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            // Outcomes the client can act on keep their own status
+            for (Throwable t = cause; t != null; t = t.getCause()) {
+                if (t instanceof EntryNotFoundException || t instanceof EntryConflictException) {
+                    throw (RuntimeException) t;
+                }
+            }
+            throw new RuntimeException(message, cause);
+        });
     }
 } 
\ No newline at end of file
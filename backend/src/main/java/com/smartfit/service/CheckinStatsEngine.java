@@ -0,0 +1,90 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.DailyRollup;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Accumulates every statistic of {@link CheckinStats} in a single pass over the entries of a range.
+ */
+public class CheckinStatsEngine {
+
+    private final long[] counts = new long[CheckinEntry.CheckinType.values().length];
+    private long totalCalories;
+    private long workoutMinutes;
+    private long totalWater;
+    private double weightSum;
+    private long weightSamples;
+    private Double lastWeight;
+    private Date lastWeightAt;
+
+    public void add(CheckinEntry.CheckinType type, Long calories, Long duration, Long water, Double weight, Date timestamp) {
+        counts[type.ordinal()]++;
+
+        if (calories != null) {
+            totalCalories += calories;
+        }
+        if (duration != null && (type == CheckinEntry.CheckinType.WORKOUT || type == CheckinEntry.CheckinType.EXERCISE)) {
+            workoutMinutes += duration;
+        }
+        if (water != null) {
+            totalWater += water;
+        }
+        if (type == CheckinEntry.CheckinType.WEIGHT && weight != null) {
+            weightSum += weight;
+            weightSamples++;
+            if (lastWeightAt == null || (timestamp != null && timestamp.after(lastWeightAt))) {
+                lastWeight = weight;
+                lastWeightAt = timestamp;
+            }
+        }
+    }
+
+    public void addRollup(DailyRollup rollup) {
+        for (Map.Entry<CheckinEntry.CheckinType, DailyRollup.TypeTotals> entry : rollup.getTotals().entrySet()) {
+            CheckinEntry.CheckinType type = entry.getKey();
+            DailyRollup.TypeTotals totals = entry.getValue();
+
+            counts[type.ordinal()] += totals.getCount();
+            totalCalories += totals.getCalories();
+            if (type == CheckinEntry.CheckinType.WORKOUT || type == CheckinEntry.CheckinType.EXERCISE) {
+                workoutMinutes += totals.getDuration();
+            }
+            totalWater += totals.getWater();
+            if (type == CheckinEntry.CheckinType.WEIGHT) {
+                // Weight is required on weight entries, so every one of them is a sample
+                weightSum += totals.getWeight();
+                weightSamples += totals.getCount();
+            }
+        }
+
+        LocalDateTime lastWeightAtOfDay = rollup.getLastWeightAt();
+        if (rollup.getLastWeight() != null && lastWeightAtOfDay != null) {
+            Date timestamp = Date.from(lastWeightAtOfDay.atZone(ZoneId.systemDefault()).toInstant());
+            if (lastWeightAt == null || timestamp.after(lastWeightAt)) {
+                lastWeight = rollup.getLastWeight();
+                lastWeightAt = timestamp;
+            }
+        }
+    }
+
+    public CheckinStats toStats() {
+        CheckinStats stats = new CheckinStats();
+        stats.setWorkouts(counts[CheckinEntry.CheckinType.WORKOUT.ordinal()]);
+        stats.setExercises(counts[CheckinEntry.CheckinType.EXERCISE.ordinal()]);
+        stats.setMeals(counts[CheckinEntry.CheckinType.MEAL.ordinal()]);
+        stats.setWeights(counts[CheckinEntry.CheckinType.WEIGHT.ordinal()]);
+        stats.setWater(counts[CheckinEntry.CheckinType.WATER.ordinal()]);
+        stats.setTotalCalories(totalCalories);
+        stats.setWorkoutMinutes(workoutMinutes);
+        stats.setTotalWater(totalWater);
+        stats.setAverageWeight(weightSamples > 0 ? weightSum / weightSamples : null);
+        stats.setLastWeight(lastWeight);
+        return stats;
+    }
+}
@@ -0,0 +1,124 @@
+package com.smartfit.service;
+
+import com.smartfit.exception.EntryConflictException;
+import com.smartfit.exception.EntryNotFoundException;
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChange;
+import com.smartfit.model.CheckinChangesPage;
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Storage of check-in entries.
+ *
+ * {@link FirebaseFirestoreService} is the default implementation; {@link com.smartfit.service.embedded.EmbeddedCheckinStore}
+ * replaces it when the "embedded" profile is active. Listings are ordered newest first and paged with the opaque
+ * cursors of {@link CheckinCursor}. Request-path operations return futures and never block the calling thread on
+ * the backend; malformed arguments such as an invalid cursor are still thrown directly.
+ */
+public interface CheckinStore {
+
+    CompletableFuture<CheckinPage> getAllEntriesByUserId(String userId, Integer limit, String startAfter);
+
+    CompletableFuture<CheckinPage> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type,
+                                                             Integer limit, String startAfter);
+
+    /**
+     * Entries between two wall-clock times of the user's zone, inclusive.
+     */
+    CompletableFuture<CheckinPage> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                  LocalDateTime endDate, ZoneId zone,
+                                                                  Integer limit, String startAfter);
+
+    /**
+     * Hands every entry of the user to the consumer, newest first, without holding the whole history in memory.
+     * Blocks until the last entry has been consumed.
+     */
+    void forEachEntryByUserId(String userId, CheckinEntryConsumer consumer)
+            throws ExecutionException, InterruptedException, IOException;
+
+    /**
+     * Up to {@code limit} changes of the user after the cursor, oldest first: entries by their update time, marked
+     * MODIFIED, and the tombstones of deleted entries, marked REMOVED. Without a cursor every live entry is listed
+     * and tombstones are left out. The page cursor is that of the last change, null when there is none.
+     */
+    CompletableFuture<CheckinChangesPage> getChangesByUserId(String userId, CheckinCursor since, int limit);
+
+    CompletableFuture<Optional<CheckinEntry>> getEntryById(String id);
+
+    /**
+     * Entries that do not exist or belong to another user are skipped.
+     */
+    CompletableFuture<List<CheckinEntry>> getEntriesByIds(String userId, List<String> ids);
+
+    CompletableFuture<CheckinEntry> createEntry(CheckinEntry entry);
+
+    /**
+     * Replaces the entry in one atomic read-and-write, failing with {@link EntryNotFoundException} when it does not
+     * exist or belongs to another user, and with {@link EntryConflictException} when an expected version is given
+     * and the entry is at another one (see {@link CheckinVersions}). A null version writes unconditionally.
+     */
+    CompletableFuture<CheckinEntry> updateEntry(String userId, String id, CheckinEntry updatedEntry, Long expectedVersion);
+
+    /**
+     * Same checks as {@link #updateEntry}. Also records a tombstone, so change listings report the deletion.
+     */
+    CompletableFuture<Void> deleteEntry(String userId, String id, Long expectedVersion);
+
+    /**
+     * Applies already validated operations atomically and returns the result of each, keyed by operation index.
+     */
+    CompletableFuture<Map<Integer, CheckinBatchResult>> applyBatch(String userId, Map<Integer, CheckinBatchOperation> operations);
+
+    /**
+     * Same range as {@link #getEntriesByUserIdAndDateRange}; whole days are those of the entries' dayKeys.
+     */
+    CompletableFuture<CheckinStats> getStatsByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                 LocalDateTime endDate, ZoneId zone);
+
+    /**
+     * Daily rollups of the user between two days in yyyyMMdd form, inclusive, ordered by day.
+     */
+    CompletableFuture<List<DailyRollup>> getDailyRollups(String userId, int startDay, int endDay);
+
+    /**
+     * Current and longest streak of the user for every {@link CheckinStreak.Type}, as of the given day.
+     */
+    CompletableFuture<List<CheckinStreak>> getStreaks(String userId, LocalDate today);
+
+    /**
+     * Starts delivering the user's changes made from now on, in commit order, until the registration is removed.
+     * Existing entries are not replayed.
+     */
+    Registration listen(String userId, ChangeListener listener);
+
+    @FunctionalInterface
+    interface CheckinEntryConsumer {
+        void accept(CheckinEntry entry) throws IOException;
+    }
+
+    interface ChangeListener {
+        void onChanges(List<CheckinChange> changes);
+
+        void onError(Throwable error);
+    }
+
+    @FunctionalInterface
+    interface Registration {
+        void remove();
+    }
+}
@@ -0,0 +1,296 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the check-in changes of each user out to all of that user's open Server-Sent Events connections.
+ *
+ * There is one store listener per user with at least one connection, shared by all of them. When the last connection
+ * goes away the listener is kept for an idle period, so a quick reconnect does not pay for a new one. Every connection
+ * has a bounded queue drained by a sender thread; a client that falls so far behind that its queue fills up is
+ * disconnected and expected to reconnect and refetch. Idle connections get a heartbeat comment, which keeps proxies
+ * from closing them and reveals dead clients.
+ *
+ * Sending and completing an emitter both lock it, so neither may happen on the store listener's thread or the
+ * heartbeat thread: those only queue events or mark a connection closed, and the connection's sender thread does the
+ * rest. Sender threads are taken from an unbounded pool only while a connection has something to send, so a client
+ * that stops reading holds up no one but itself. A send still blocked after the send timeout gets its connection
+ * disconnected and its thread interrupted; a write the container does not abort on interrupt fails at the latest with
+ * the container's own write timeout.
+ */
+@Service
+public class CheckinStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckinStreamService.class);
+
+    private final CheckinStore checkinStore;
+    private final Duration idleTimeout;
+    private final Duration connectionTimeout;
+    private final int queueCapacity;
+    private final long sendTimeoutNanos;
+    private final Map<String, UserFeed> feeds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkin-stream-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService sender;
+
+    public CheckinStreamService(CheckinStore checkinStore,
+                                @Value("${checkin.stream.idle-timeout:60s}") Duration idleTimeout,
+                                @Value("${checkin.stream.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                @Value("${checkin.stream.connection-timeout:30m}") Duration connectionTimeout,
+                                @Value("${checkin.stream.queue-capacity:256}") int queueCapacity,
+                                @Value("${checkin.stream.send-timeout:10s}") Duration sendTimeout) {
+        this.checkinStore = checkinStore;
+        this.idleTimeout = idleTimeout;
+        this.connectionTimeout = connectionTimeout;
+        this.queueCapacity = queueCapacity;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "checkin-stream-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long heartbeatMillis = heartbeatInterval.toMillis();
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        long sendCheckMillis = Math.max(sendTimeout.toMillis() / 2, 100);
+        scheduler.scheduleAtFixedRate(this::disconnectStuckSends, sendCheckMillis, sendCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        feeds.values().forEach(UserFeed::close);
+        sender.shutdownNow();
+    }
+
+    public SseEmitter connect(String userId) {
+        SseEmitter emitter = new SseEmitter(connectionTimeout.toMillis());
+        Connection connection = new Connection(emitter);
+
+        // A feed that is being torn down refuses new connections; the retry then creates a fresh one
+        while (!feeds.computeIfAbsent(userId, UserFeed::new).add(connection)) {
+            Thread.onSpinWait();
+        }
+
+        emitter.onCompletion(connection::close);
+        emitter.onTimeout(connection::close);
+        emitter.onError(error -> connection.close());
+        return emitter;
+    }
+
+    private void sendHeartbeats() {
+        for (UserFeed feed : feeds.values()) {
+            for (Connection connection : feed.connections) {
+                connection.offer(SseEmitter.event().comment("heartbeat").build());
+            }
+        }
+    }
+
+    private void disconnectStuckSends() {
+        long now = System.nanoTime();
+        for (UserFeed feed : feeds.values()) {
+            for (Connection connection : feed.connections) {
+                connection.disconnectIfSendStuck(now);
+            }
+        }
+    }
+
+    private class UserFeed implements CheckinStore.ChangeListener {
+
+        private final String userId;
+        private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+        private CheckinStore.Registration registration;
+        private ScheduledFuture<?> idleTeardown;
+        private boolean closed;
+
+        private UserFeed(String userId) {
+            this.userId = userId;
+        }
+
+        synchronized boolean add(Connection connection) {
+            if (closed) {
+                return false;
+            }
+            if (idleTeardown != null) {
+                idleTeardown.cancel(false);
+                idleTeardown = null;
+            }
+            if (registration == null) {
+                registration = checkinStore.listen(userId, this);
+            }
+            connection.feed = this;
+            connections.add(connection);
+            return true;
+        }
+
+        synchronized void remove(Connection connection) {
+            if (connections.remove(connection) && connections.isEmpty() && !closed) {
+                idleTeardown = scheduler.schedule(this::closeIfIdle, idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void closeIfIdle() {
+            if (connections.isEmpty()) {
+                close();
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (registration != null) {
+                registration.remove();
+            }
+            feeds.remove(userId, this);
+            connections.forEach(Connection::disconnect);
+        }
+
+        @Override
+        public void onChanges(List<CheckinChange> changes) {
+            for (CheckinChange change : changes) {
+                // Built once and shared, a builder must not be built twice
+                Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+                        .name(change.getType().name().toLowerCase())
+                        .id(change.getId())
+                        .data(change, MediaType.APPLICATION_JSON)
+                        .build();
+                for (Connection connection : connections) {
+                    connection.offer(event);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            // The listener is dead; clients reconnect and get a new one
+            logger.warn("Check-in listener for user {} failed", userId, error);
+            close();
+        }
+    }
+
+    private class Connection {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean completePending;
+        private volatile Thread sendingThread;
+        private volatile long sendStartedAt;
+        private volatile UserFeed feed;
+
+        private Connection(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                logger.debug("Disconnecting slow check-in stream consumer");
+                disconnect();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        /**
+         * Closes the connection from the server's side. The emitter is completed by the sender thread, after any
+         * send in progress, never on the calling thread.
+         */
+        void disconnect() {
+            completePending = true;
+            close();
+            scheduleDrain();
+        }
+
+        void disconnectIfSendStuck(long now) {
+            Thread thread = sendingThread;
+            if (thread != null && now - sendStartedAt > sendTimeoutNanos) {
+                logger.debug("Disconnecting check-in stream consumer that stopped reading");
+                disconnect();
+                if (sendingThread == thread) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    sendStartedAt = System.nanoTime();
+                    sendingThread = Thread.currentThread();
+                    try {
+                        emitter.send(event);
+                    } finally {
+                        sendingThread = null;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away, or the emitter already completed
+                close();
+            } finally {
+                // Clears an interrupt of a stuck send that returned anyway, before the thread goes back to the pool
+                Thread.interrupted();
+                draining.set(false);
+            }
+            if (closed.get()) {
+                if (completePending && completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } else if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                queue.clear();
+                UserFeed currentFeed = feed;
+                if (currentFeed != null) {
+                    currentFeed.remove(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.smartfit.service;
+
+import com.smartfit.exception.EntryConflictException;
+import com.smartfit.model.CheckinEntry;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Versions of single check-ins for optimistic concurrency: the epoch millisecond of {@code updatedAt}, the precision
+ * Firestore keeps, handed to clients as a strong ETag.
+ */
+public final class CheckinVersions {
+
+    private CheckinVersions() {
+    }
+
+    public static long of(CheckinEntry entry) {
+        LocalDateTime updatedAt = entry.getUpdatedAt();
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    public static String etag(CheckinEntry entry) {
+        return "\"" + of(entry) + "\"";
+    }
+
+    /**
+     * The version an If-Match header asks for, or null for none or "*". A header that cannot be one of our ETags,
+     * e.g. a weak one, matches no version.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Throws when an expected version is given and the current entry is at another one.
+     */
+    public static void check(CheckinEntry current, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != of(current)) {
+            throw new EntryConflictException("Entry " + current.getId() + " has been changed, expected version "
+                    + expectedVersion + " but found " + of(current));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinEntry;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time zones of check-ins. A check-in's timestamp is the user's wall clock in the zone stored with it, and its
+ * dayKey the yyyyMMdd date of that wall clock, so day boundaries follow the user rather than the server.
+ *
+ * Entries stored before zones were recorded were converted through the server's zone, and are read back the same
+ * way until {@link DayKeyBackfillRunner} has stamped them.
+ */
+public final class CheckinZones {
+
+    // Firestore takes up to 30 values in an "in" filter
+    public static final int MAX_DAY_KEYS = 30;
+
+    private CheckinZones() {
+    }
+
+    public static boolean isValid(String timeZone) {
+        return parse(timeZone, null) != null;
+    }
+
+    /**
+     * The zone with the given id, or the fallback when the id is absent or unknown.
+     */
+    public static ZoneId parse(String timeZone, ZoneId fallback) {
+        if (timeZone == null || timeZone.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            return fallback;
+        }
+    }
+
+    public static ZoneId zoneOf(CheckinEntry entry) {
+        return parse(entry.getTimeZone(), ZoneId.systemDefault());
+    }
+
+    public static Instant instantOf(CheckinEntry entry) {
+        return entry.getTimestamp().atZone(zoneOf(entry)).toInstant();
+    }
+
+    /**
+     * Puts a new or replaced entry in the user's zone. A timestamp sent with an offset becomes the user's wall clock
+     * at that instant; one without is already taken as the user's wall clock.
+     */
+    public static void assign(CheckinEntry entry, ZoneId zone) {
+        if (entry.getTimestampOffset() != null) {
+            entry.setTimestamp(entry.getTimestamp().atOffset(entry.getTimestampOffset())
+                    .atZoneSameInstant(zone).toLocalDateTime());
+            entry.setTimestampOffset(null);
+        }
+        entry.setTimeZone(zone.getId());
+        entry.setDayKey(DailyRollupService.dayOf(entry.getTimestamp()));
+    }
+
+    /**
+     * The dayKeys from the start to the end day, inclusive, or null when there are more than fit one "in" filter.
+     */
+    public static List<Integer> dayKeys(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate) || startDate.plusDays(MAX_DAY_KEYS).isBefore(endDate.plusDays(1))) {
+            return null;
+        }
+        List<Integer> dayKeys = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dayKeys.add(DailyRollupService.dayOf(date.atStartOfDay()));
+        }
+        return dayKeys;
+    }
+}
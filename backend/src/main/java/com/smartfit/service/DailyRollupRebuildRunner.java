@@ -0,0 +1,28 @@
+package com.smartfit.service;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off job that recomputes every user's daily rollups at startup, enabled with
+ * {@code checkin.rollups.rebuild-on-startup=true}.
+ */
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(name = "checkin.rollups.rebuild-on-startup", havingValue = "true")
+public class DailyRollupRebuildRunner implements ApplicationRunner {
+
+    private final DailyRollupService dailyRollupService;
+
+    public DailyRollupRebuildRunner(DailyRollupService dailyRollupService) {
+        this.dailyRollupService = dailyRollupService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        dailyRollupService.rebuildAll();
+    }
+}
@@ -0,0 +1,582 @@
+package com.smartfit.service;
+
+import com.google.cloud.firestore.*;
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Maintains the per-user, per-day rollup documents in the "dailyRollups" collection, and the streak runs derived
+ * from them in "checkinStreaks". Days are the check-ins' dayKeys, dates in the user's zone (see {@link CheckinZones}).
+ *
+ * Every check-in mutation in {@link FirebaseFirestoreService} calls {@link #prepare} and {@link RollupChange#apply}
+ * inside its own transaction, so the rollups never drift from the raw entries. {@link #rebuildAll} recomputes them
+ * from scratch after a manual data fix; it runs from {@link DailyRollupRebuildRunner} only, while no writes come in,
+ * since a check-in written during the rebuild may be overwritten by a rollup computed without it.
+ *
+ * A user's streak document is created from the rollups on the first {@link #getStreaks} and from then on moved
+ * along in the same transactions, whenever a day gains its first or loses its last check-in of a streak type.
+ */
+@Service
+@Profile("!embedded")
+public class DailyRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyRollupService.class);
+    private static final String COLLECTION_NAME = "dailyRollups";
+    private static final String CHECKINS_COLLECTION_NAME = "checkins";
+    private static final String STREAKS_COLLECTION_NAME = "checkinStreaks";
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_WRITES = 400;
+
+    private final Firestore firestore;
+    private final OperationMetrics metrics;
+    private final UserDataVersionService userDataVersionService;
+    private final boolean dayKeyQueries;
+
+    @Autowired
+    public DailyRollupService(@Lazy Firestore firestore, OperationMetrics metrics,
+                              UserDataVersionService userDataVersionService,
+                              @Value("${checkin.day-keys.queries-enabled:false}") boolean dayKeyQueries) {
+        this.firestore = firestore;
+        this.metrics = metrics;
+        this.userDataVersionService = userDataVersionService;
+        this.dayKeyQueries = dayKeyQueries;
+    }
+
+    public static int dayOf(LocalDateTime timestamp) {
+        LocalDate date = timestamp.toLocalDate();
+        return date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    public static LocalDate dateOf(int day) {
+        return LocalDate.of(day / 10000, (day / 100) % 100, day % 100);
+    }
+
+    public CompletableFuture<List<DailyRollup>> getRollups(String userId, int startDay, int endDay) {
+        Query query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThanOrEqualTo("day", startDay)
+                .whereLessThanOrEqualTo("day", endDay);
+
+        return metrics.firestore("getRollups", query::get).thenApply(querySnapshot -> {
+            List<DailyRollup> rollups = new ArrayList<>();
+
+            for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
+                rollups.add(documentToDailyRollup(document));
+            }
+
+            rollups.sort(Comparator.comparingInt(DailyRollup::getDay));
+            return rollups;
+        });
+    }
+
+    /**
+     * Performs the reads needed to move {@code removed} out of and {@code added} into the rollups.
+     * Either may be null. Must be called before any write of the transaction.
+     */
+    public RollupChange prepare(Transaction transaction, CheckinEntry removed, CheckinEntry added)
+            throws ExecutionException, InterruptedException {
+        return prepare(transaction,
+                removed != null ? List.of(removed) : List.of(),
+                added != null ? List.of(added) : List.of());
+    }
+
+    /**
+     * Same as {@link #prepare(Transaction, CheckinEntry, CheckinEntry)} for several mutations committed together.
+     * All entries must belong to the same user.
+     */
+    public RollupChange prepare(Transaction transaction, List<CheckinEntry> removed, List<CheckinEntry> added)
+            throws ExecutionException, InterruptedException {
+        RollupChange change = new RollupChange();
+        removed.forEach(entry -> change.add(entry, -1));
+        added.forEach(entry -> change.add(entry, 1));
+
+        // Only weight entries need the current rollup state, to keep track of the day's last weight
+        Map<Integer, String> weightDays = new TreeMap<>();
+        for (CheckinEntry entry : removed) {
+            if (isWeight(entry)) {
+                weightDays.put(dayOf(entry.getTimestamp()), entry.getUserId());
+            }
+        }
+        for (CheckinEntry entry : added) {
+            if (isWeight(entry)) {
+                weightDays.put(dayOf(entry.getTimestamp()), entry.getUserId());
+            }
+        }
+
+        for (Map.Entry<Integer, String> weightDay : weightDays.entrySet()) {
+            int day = weightDay.getKey();
+            String userId = weightDay.getValue();
+            DocumentSnapshot rollupDocument = transaction.get(rollupRef(userId, day)).get();
+
+            String lastWeightEntryId = rollupDocument.getString("lastWeightEntryId");
+            Double lastWeight = rollupDocument.getDouble("lastWeight");
+            Date lastWeightAt = rollupDocument.getDate("lastWeightAt");
+
+            Set<String> removedIds = new HashSet<>();
+            ZoneId zone = null;
+            for (CheckinEntry entry : removed) {
+                if (isWeight(entry) && dayOf(entry.getTimestamp()) == day && entry.getId() != null) {
+                    removedIds.add(entry.getId());
+                    zone = CheckinZones.zoneOf(entry);
+                }
+            }
+
+            if (lastWeightEntryId != null && removedIds.contains(lastWeightEntryId)) {
+                // The day's last weight goes away, find the one before it
+                lastWeightEntryId = null;
+                lastWeight = null;
+                lastWeightAt = null;
+                for (QueryDocumentSnapshot document : transaction.get(weightEntriesOfDay(userId, day, zone)).get()
+                        .getDocuments()) {
+                    Date timestamp = document.getDate("timestamp");
+                    if (!removedIds.contains(document.getId()) && document.getDouble("weight") != null
+                            && (lastWeightAt == null || (timestamp != null && timestamp.after(lastWeightAt)))) {
+                        lastWeightEntryId = document.getId();
+                        lastWeight = document.getDouble("weight");
+                        lastWeightAt = timestamp;
+                    }
+                }
+            }
+
+            for (CheckinEntry entry : added) {
+                if (isWeight(entry) && dayOf(entry.getTimestamp()) == day) {
+                    Date addedAt = Date.from(CheckinZones.instantOf(entry));
+                    if (lastWeightAt == null || !addedAt.before(lastWeightAt)) {
+                        lastWeightEntryId = entry.getId();
+                        lastWeight = entry.getWeight();
+                        lastWeightAt = addedAt;
+                    }
+                }
+            }
+
+            change.setLastWeight(userId, day, lastWeightEntryId, lastWeight, lastWeightAt);
+        }
+
+        prepareStreaks(transaction, change);
+        return change;
+    }
+
+    /**
+     * Reads the streak document and the rollups of the days whose streak type counts change, and works out the
+     * days that become active or inactive. Users without a streak document are skipped, theirs is built from the
+     * rollups when first requested.
+     */
+    private void prepareStreaks(Transaction transaction, RollupChange change) throws ExecutionException, InterruptedException {
+        // Net count change per day and streak type
+        String userId = null;
+        Map<Integer, Map<CheckinStreak.Type, Long>> countChanges = new TreeMap<>();
+        for (Delta delta : change.deltas.values()) {
+            for (Map.Entry<CheckinEntry.CheckinType, long[]> typeDelta : delta.types.entrySet()) {
+                CheckinStreak.Type streakType = CheckinStreak.Type.of(typeDelta.getKey());
+                if (streakType != null && typeDelta.getValue()[0] != 0) {
+                    userId = delta.userId;
+                    countChanges.computeIfAbsent(delta.day, d -> new EnumMap<>(CheckinStreak.Type.class))
+                            .merge(streakType, typeDelta.getValue()[0], Long::sum);
+                }
+            }
+        }
+        countChanges.values().removeIf(typeChanges -> {
+            typeChanges.values().removeIf(count -> count == 0);
+            return typeChanges.isEmpty();
+        });
+        if (countChanges.isEmpty()) {
+            return;
+        }
+
+        DocumentSnapshot streakDocument = transaction.get(streakRef(userId)).get();
+        if (!streakDocument.exists()) {
+            return;
+        }
+        Map<CheckinStreak.Type, StreakRuns> runs = documentToStreakRuns(streakDocument);
+
+        List<Integer> days = new ArrayList<>(countChanges.keySet());
+        DocumentReference[] rollupRefs = new DocumentReference[days.size()];
+        for (int i = 0; i < days.size(); i++) {
+            rollupRefs[i] = rollupRef(userId, days.get(i));
+        }
+        List<DocumentSnapshot> rollupDocuments = transaction.getAll(rollupRefs).get();
+
+        boolean changed = false;
+        for (int i = 0; i < days.size(); i++) {
+            DocumentSnapshot rollupDocument = rollupDocuments.get(i);
+            DailyRollup rollup = rollupDocument.exists() ? documentToDailyRollup(rollupDocument) : null;
+            LocalDate date = dateOf(days.get(i));
+
+            for (Map.Entry<CheckinStreak.Type, Long> typeChange : countChanges.get(days.get(i)).entrySet()) {
+                long before = rollup != null ? StreakRuns.count(rollup, typeChange.getKey()) : 0;
+                long after = before + typeChange.getValue();
+                if (before == 0 && after > 0) {
+                    runs.get(typeChange.getKey()).activate(date);
+                    changed = true;
+                } else if (before > 0 && after <= 0) {
+                    runs.get(typeChange.getKey()).deactivate(date);
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed) {
+            change.setStreaks(userId, runs);
+        }
+    }
+
+    public CompletableFuture<List<CheckinStreak>> getStreaks(String userId, LocalDate today) {
+        return metrics.firestore("getStreaks", () -> streakRef(userId).get()).thenCompose(document -> {
+            if (document.exists()) {
+                return CompletableFuture.completedFuture(toStreaks(documentToStreakRuns(document), today));
+            }
+
+            // First request of the user: derive the runs from the rollups, in a transaction so no write slips past
+            return metrics.firestore("buildStreaks", () -> firestore.runTransaction(transaction -> {
+                Query query = firestore.collection(COLLECTION_NAME).whereEqualTo("userId", userId);
+                Map<CheckinStreak.Type, StreakRuns> runs = StreakRuns.byType();
+                for (QueryDocumentSnapshot rollupDocument : transaction.get(query).get().getDocuments()) {
+                    DailyRollup rollup = documentToDailyRollup(rollupDocument);
+                    for (CheckinStreak.Type type : CheckinStreak.Type.values()) {
+                        if (StreakRuns.count(rollup, type) > 0) {
+                            runs.get(type).activate(dateOf(rollup.getDay()));
+                        }
+                    }
+                }
+                transaction.set(streakRef(userId), streakRunsToMap(userId, runs));
+                return runs;
+            })).thenApply(runs -> toStreaks(runs, today));
+        });
+    }
+
+    private static List<CheckinStreak> toStreaks(Map<CheckinStreak.Type, StreakRuns> runs, LocalDate today) {
+        List<CheckinStreak> streaks = new ArrayList<>();
+        for (Map.Entry<CheckinStreak.Type, StreakRuns> typeRuns : runs.entrySet()) {
+            streaks.add(typeRuns.getValue().toStreak(typeRuns.getKey(), today));
+        }
+        return streaks;
+    }
+
+    /**
+     * Recomputes the rollups of every user. Entries are paged in user order, so only one user's days are
+     * held in memory at a time.
+     */
+    public void rebuildAll() throws ExecutionException, InterruptedException {
+        Query baseQuery = firestore.collection(CHECKINS_COLLECTION_NAME)
+                .orderBy("userId")
+                .select("userId", "type", "calories", "duration", "water", "weight", "timestamp")
+                .limit(REBUILD_PAGE_SIZE);
+
+        String currentUserId = null;
+        Map<Integer, DailyRollup> rollups = new HashMap<>();
+        int users = 0;
+        DocumentSnapshot lastDocument = null;
+
+        while (true) {
+            Query page = lastDocument == null ? baseQuery : baseQuery.startAfter(lastDocument);
+            List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+
+            for (QueryDocumentSnapshot document : documents) {
+                String userId = document.getString("userId");
+                if (!userId.equals(currentUserId)) {
+                    if (currentUserId != null) {
+                        replaceRollups(currentUserId, rollups.values());
+                        users++;
+                    }
+                    currentUserId = userId;
+                    rollups = new HashMap<>();
+                }
+                addToRollup(rollups, userId, document);
+            }
+
+            if (documents.size() < REBUILD_PAGE_SIZE) {
+                break;
+            }
+            lastDocument = documents.get(documents.size() - 1);
+        }
+
+        if (currentUserId != null) {
+            replaceRollups(currentUserId, rollups.values());
+            users++;
+        }
+        logger.info("Rebuilt daily rollups for {} users", users);
+    }
+
+    private void addToRollup(Map<Integer, DailyRollup> rollups, String userId, DocumentSnapshot document) {
+        Date timestamp = document.getDate("timestamp");
+        String type = document.getString("type");
+        if (timestamp == null || type == null) {
+            return;
+        }
+
+        CheckinEntry.CheckinType checkinType = CheckinEntry.CheckinType.valueOf(type.toUpperCase());
+        LocalDateTime localTimestamp = LocalDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault());
+        // Entries without a dayKey yet were stored through the server's zone
+        Long dayKey = document.getLong("dayKey");
+        int day = dayKey != null ? dayKey.intValue() : dayOf(localTimestamp);
+        DailyRollup rollup = rollups.computeIfAbsent(day, d -> new DailyRollup(userId, d));
+
+        DailyRollup.TypeTotals totals = rollup.getOrCreateTotals(checkinType);
+        totals.setCount(totals.getCount() + 1);
+        totals.setCalories(totals.getCalories() + valueOrZero(document.getLong("calories")));
+        totals.setDuration(totals.getDuration() + valueOrZero(document.getLong("duration")));
+        totals.setWater(totals.getWater() + valueOrZero(document.getLong("water")));
+
+        Double weight = document.getDouble("weight");
+        if (weight != null) {
+            totals.setWeight(totals.getWeight() + weight);
+            if (checkinType == CheckinEntry.CheckinType.WEIGHT
+                    && (rollup.getLastWeightAt() == null || !localTimestamp.isBefore(rollup.getLastWeightAt()))) {
+                rollup.setLastWeight(weight);
+                rollup.setLastWeightAt(localTimestamp);
+                rollup.setLastWeightEntryId(document.getId());
+            }
+        }
+    }
+
+    // Overwrites the recomputed days and only then deletes the days left without entries, so a reader never sees
+    // the user's rollups missing in between
+    private void replaceRollups(String userId, Collection<DailyRollup> rollups) throws ExecutionException, InterruptedException {
+        Set<DocumentReference> stale = new HashSet<>();
+        for (QueryDocumentSnapshot document : firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId).select("day").get().get().getDocuments()) {
+            stale.add(document.getReference());
+        }
+
+        WriteBatch batch = firestore.batch();
+        int writes = 0;
+        for (DailyRollup rollup : rollups) {
+            DocumentReference reference = rollupRef(userId, rollup.getDay());
+            stale.remove(reference);
+            batch.set(reference, dailyRollupToMap(rollup));
+            if (++writes == MAX_BATCH_WRITES) {
+                batch.commit().get();
+                batch = firestore.batch();
+                writes = 0;
+            }
+        }
+        for (DocumentReference reference : stale) {
+            batch.delete(reference);
+            if (++writes == MAX_BATCH_WRITES) {
+                batch.commit().get();
+                batch = firestore.batch();
+                writes = 0;
+            }
+        }
+        // Streaks are derived from the rollups again on the next request
+        batch.delete(streakRef(userId));
+        userDataVersionService.bump(batch, userId);
+        batch.commit().get();
+    }
+
+    private DocumentReference rollupRef(String userId, int day) {
+        return firestore.collection(COLLECTION_NAME).document(userId + "_" + day);
+    }
+
+    private DocumentReference streakRef(String userId) {
+        return firestore.collection(STREAKS_COLLECTION_NAME).document(userId);
+    }
+
+    // By dayKey only once every entry has one, see checkin.day-keys.queries-enabled
+    private Query weightEntriesOfDay(String userId, int day, ZoneId zone) {
+        Query query = firestore.collection(CHECKINS_COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("type", CheckinEntry.CheckinType.WEIGHT.toString());
+        if (dayKeyQueries) {
+            return query.whereEqualTo("dayKey", day);
+        }
+        LocalDate date = dateOf(day);
+        return query
+                .whereGreaterThanOrEqualTo("timestamp", Date.from(date.atStartOfDay(zone).toInstant()))
+                .whereLessThan("timestamp", Date.from(date.plusDays(1).atStartOfDay(zone).toInstant()));
+    }
+
+    private DailyRollup documentToDailyRollup(DocumentSnapshot document) {
+        DailyRollup rollup = new DailyRollup(document.getString("userId"), document.getLong("day").intValue());
+
+        Object types = document.get("types");
+        if (types instanceof Map<?, ?> typeMap) {
+            for (Map.Entry<?, ?> typeEntry : typeMap.entrySet()) {
+                if (!(typeEntry.getValue() instanceof Map<?, ?> values)) {
+                    continue;
+                }
+                DailyRollup.TypeTotals totals = rollup.getOrCreateTotals(
+                        CheckinEntry.CheckinType.valueOf(typeEntry.getKey().toString()));
+                totals.setCount(longValue(values.get("count")));
+                totals.setCalories(longValue(values.get("calories")));
+                totals.setDuration(longValue(values.get("duration")));
+                totals.setWater(longValue(values.get("water")));
+                totals.setWeight(values.get("weight") instanceof Number n ? n.doubleValue() : 0.0);
+            }
+        }
+
+        rollup.setLastWeight(document.getDouble("lastWeight"));
+        Date lastWeightAt = document.getDate("lastWeightAt");
+        if (lastWeightAt != null) {
+            rollup.setLastWeightAt(LocalDateTime.ofInstant(lastWeightAt.toInstant(), ZoneId.systemDefault()));
+        }
+        rollup.setLastWeightEntryId(document.getString("lastWeightEntryId"));
+        return rollup;
+    }
+
+    private static Map<CheckinStreak.Type, StreakRuns> documentToStreakRuns(DocumentSnapshot document) {
+        Map<CheckinStreak.Type, StreakRuns> runs = StreakRuns.byType();
+        if (document.get("runs") instanceof Map<?, ?> typeMap) {
+            for (CheckinStreak.Type type : CheckinStreak.Type.values()) {
+                if (typeMap.get(type.toString()) instanceof List<?> days) {
+                    runs.put(type, StreakRuns.fromDays(days));
+                }
+            }
+        }
+        return runs;
+    }
+
+    private static Map<String, Object> streakRunsToMap(String userId, Map<CheckinStreak.Type, StreakRuns> runs) {
+        Map<String, Object> typeMap = new HashMap<>();
+        for (Map.Entry<CheckinStreak.Type, StreakRuns> typeRuns : runs.entrySet()) {
+            typeMap.put(typeRuns.getKey().toString(), typeRuns.getValue().toDays());
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("runs", typeMap);
+        return data;
+    }
+
+    private Map<String, Object> dailyRollupToMap(DailyRollup rollup) {
+        Map<String, Object> types = new HashMap<>();
+        for (Map.Entry<CheckinEntry.CheckinType, DailyRollup.TypeTotals> entry : rollup.getTotals().entrySet()) {
+            DailyRollup.TypeTotals totals = entry.getValue();
+            Map<String, Object> values = new HashMap<>();
+            values.put("count", totals.getCount());
+            values.put("calories", totals.getCalories());
+            values.put("duration", totals.getDuration());
+            values.put("water", totals.getWater());
+            values.put("weight", totals.getWeight());
+            types.put(entry.getKey().toString(), values);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", rollup.getUserId());
+        data.put("day", rollup.getDay());
+        data.put("types", types);
+        data.put("lastWeight", rollup.getLastWeight());
+        data.put("lastWeightAt", rollup.getLastWeightAt() != null ? toDate(rollup.getLastWeightAt()) : null);
+        data.put("lastWeightEntryId", rollup.getLastWeightEntryId());
+        return data;
+    }
+
+    private static boolean isWeight(CheckinEntry entry) {
+        return entry != null && entry.getType() == CheckinEntry.CheckinType.WEIGHT && entry.getWeight() != null;
+    }
+
+    private static Date toDate(LocalDateTime timestamp) {
+        return Date.from(timestamp.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static long valueOrZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static long valueOrZero(Integer value) {
+        return value != null ? value : 0L;
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    /**
+     * The writes that bring the rollups in line with one check-in mutation.
+     */
+    public class RollupChange {
+
+        private final Map<String, Delta> deltas = new HashMap<>();
+        private String streakUserId;
+        private Map<CheckinStreak.Type, StreakRuns> streakRuns;
+
+        private void add(CheckinEntry entry, int sign) {
+            int day = dayOf(entry.getTimestamp());
+            Delta delta = deltas.computeIfAbsent(entry.getUserId() + "_" + day, key -> new Delta(entry.getUserId(), day));
+            long[] values = delta.types.computeIfAbsent(entry.getType(), type -> new long[4]);
+            values[0] += sign;
+            values[1] += sign * valueOrZero(entry.getCalories());
+            values[2] += sign * valueOrZero(entry.getDuration());
+            values[3] += sign * valueOrZero(entry.getWater());
+            if (entry.getWeight() != null) {
+                delta.weights.merge(entry.getType(), sign * entry.getWeight(), Double::sum);
+            }
+        }
+
+        private void setLastWeight(String userId, int day, String entryId, Double weight, Date at) {
+            Delta delta = deltas.computeIfAbsent(userId + "_" + day, key -> new Delta(userId, day));
+            delta.lastWeightKnown = true;
+            delta.lastWeightEntryId = entryId;
+            delta.lastWeight = weight;
+            delta.lastWeightAt = at;
+        }
+
+        private void setStreaks(String userId, Map<CheckinStreak.Type, StreakRuns> runs) {
+            streakUserId = userId;
+            streakRuns = runs;
+        }
+
+        public void apply(Transaction transaction) {
+            if (streakRuns != null) {
+                transaction.set(streakRef(streakUserId), streakRunsToMap(streakUserId, streakRuns));
+            }
+            for (Delta delta : deltas.values()) {
+                Map<String, Object> types = new HashMap<>();
+                for (Map.Entry<CheckinEntry.CheckinType, long[]> typeDelta : delta.types.entrySet()) {
+                    long[] values = typeDelta.getValue();
+                    Map<String, Object> increments = new HashMap<>();
+                    increments.put("count", FieldValue.increment(values[0]));
+                    increments.put("calories", FieldValue.increment(values[1]));
+                    increments.put("duration", FieldValue.increment(values[2]));
+                    increments.put("water", FieldValue.increment(values[3]));
+                    increments.put("weight", FieldValue.increment(delta.weights.getOrDefault(typeDelta.getKey(), 0.0)));
+                    types.put(typeDelta.getKey().toString(), increments);
+                }
+
+                Map<String, Object> data = new HashMap<>();
+                data.put("userId", delta.userId);
+                data.put("day", delta.day);
+                data.put("types", types);
+                if (delta.lastWeightKnown) {
+                    data.put("lastWeightEntryId", delta.lastWeightEntryId);
+                    data.put("lastWeight", delta.lastWeight);
+                    data.put("lastWeightAt", delta.lastWeightAt);
+                }
+
+                transaction.set(rollupRef(delta.userId, delta.day), data, SetOptions.merge());
+            }
+        }
+    }
+
+    private static class Delta {
+        private final String userId;
+        private final int day;
+        // count, calories, duration, water
+        private final Map<CheckinEntry.CheckinType, long[]> types = new EnumMap<>(CheckinEntry.CheckinType.class);
+        private final Map<CheckinEntry.CheckinType, Double> weights = new EnumMap<>(CheckinEntry.CheckinType.class);
+        private boolean lastWeightKnown;
+        private String lastWeightEntryId;
+        private Double lastWeight;
+        private Date lastWeightAt;
+
+        private Delta(String userId, int day) {
+            this.userId = userId;
+            this.day = day;
+        }
+    }
+}
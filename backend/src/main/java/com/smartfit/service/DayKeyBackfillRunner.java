@@ -0,0 +1,28 @@
+package com.smartfit.service;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off job that stamps check-ins stored before zones were recorded with their zone and dayKey at startup, enabled
+ * with {@code checkin.day-keys.backfill-on-startup=true}.
+ */
+@Component
+@Profile("!embedded")
+@ConditionalOnProperty(name = "checkin.day-keys.backfill-on-startup", havingValue = "true")
+public class DayKeyBackfillRunner implements ApplicationRunner {
+
+    private final FirebaseFirestoreService firestoreService;
+
+    public DayKeyBackfillRunner(FirebaseFirestoreService firestoreService) {
+        this.firestoreService = firestoreService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        firestoreService.backfillDayKeys();
+    }
+}
@@ -2,25 +2,27 @@ package com.smartfit.service;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 @Service
 public class FirebaseAuthService {
 
-    private final FirebaseAuth firebaseAuth;
+    // Created on first use, see FirebaseConfig
+    private final ObjectProvider<FirebaseAuth> firebaseAuth;
 
-    public FirebaseAuthService(FirebaseAuth firebaseAuth) {
+    public FirebaseAuthService(ObjectProvider<FirebaseAuth> firebaseAuth) {
         this.firebaseAuth = firebaseAuth;
     }
 
     public String getUserIdFromToken(String idToken) throws Exception {
-        FirebaseToken decodedToken = firebaseAuth.verifyIdToken(idToken);
+        FirebaseToken decodedToken = firebaseAuth.getObject().verifyIdToken(idToken);
         return decodedToken.getUid();
     }
 
     public boolean isValidToken(String idToken) {
         try {
-            firebaseAuth.verifyIdToken(idToken);
+            firebaseAuth.getObject().verifyIdToken(idToken);
             return true;
         } catch (Exception e) {
             return false;
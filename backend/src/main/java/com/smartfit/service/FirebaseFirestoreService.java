@@ -1,166 +1,711 @@
 package com.smartfit.service;
 
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.smartfit.exception.EntryNotFoundException;
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChange;
+import com.smartfit.model.CheckinChangesPage;
 import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 @Service
-public class FirebaseFirestoreService {
+@Profile("!embedded")
+public class FirebaseFirestoreService implements CheckinStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseFirestoreService.class);
 
     private final Firestore firestore;
+    private final DailyRollupService dailyRollupService;
+    private final Duration tombstoneRetention;
+    private final OperationMetrics metrics;
+    private final UserDataVersionService userDataVersionService;
+    private final boolean dayKeyQueries;
     private static final String COLLECTION_NAME = "checkins";
+    private static final String TOMBSTONES_COLLECTION_NAME = "checkinTombstones";
+    private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final int BACKFILL_PAGE_SIZE = 500;
 
     @Autowired
-    public FirebaseFirestoreService(Firestore firestore) {
+    public FirebaseFirestoreService(@Lazy Firestore firestore, DailyRollupService dailyRollupService,
+                                    @Value("${checkin.changes.tombstone-retention:30d}") Duration tombstoneRetention,
+                                    OperationMetrics metrics, UserDataVersionService userDataVersionService,
+                                    @Value("${checkin.day-keys.queries-enabled:false}") boolean dayKeyQueries) {
         this.firestore = firestore;
+        this.dailyRollupService = dailyRollupService;
+        this.tombstoneRetention = tombstoneRetention;
+        this.metrics = metrics;
+        this.userDataVersionService = userDataVersionService;
+        this.dayKeyQueries = dayKeyQueries;
     }
 
-    public List<CheckinEntry> getAllEntriesByUserId(String userId) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<CheckinPage> getAllEntriesByUserId(String userId, Integer limit, String startAfter) {
         Query query = firestore.collection(COLLECTION_NAME)
                 .whereEqualTo("userId", userId);
 
-        QuerySnapshot querySnapshot = query.get().get();
-        List<CheckinEntry> entries = new ArrayList<>();
-
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            entries.add(documentToCheckinEntry(document));
-        }
-
-        // Sort in memory instead of in the query to avoid requiring an index
-        entries.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
-
-        return entries;
+        return getPage(query, limit, startAfter);
     }
 
-    public List<CheckinEntry> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type) 
-            throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type,
+                                                                    Integer limit, String startAfter) {
         Query query = firestore.collection(COLLECTION_NAME)
                 .whereEqualTo("userId", userId)
                 .whereEqualTo("type", type.toString());
 
-        QuerySnapshot querySnapshot = query.get().get();
-        List<CheckinEntry> entries = new ArrayList<>();
+        return getPage(query, limit, startAfter);
+    }
 
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            entries.add(documentToCheckinEntry(document));
+    /**
+     * Ranges of whole days, up to {@link CheckinZones#MAX_DAY_KEYS} of them, are looked up by dayKey once every entry
+     * has one (checkin.day-keys.queries-enabled); other ranges are scanned by timestamp, taken as the user's wall
+     * clock.
+     */
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate, ZoneId zone,
+                                                                         Integer limit, String startAfter) {
+        List<Integer> dayKeys = dayKeyQueries && isWholeDays(startDate, endDate)
+                ? CheckinZones.dayKeys(startDate.toLocalDate(), endDate.toLocalDate()) : null;
+        if (dayKeys != null) {
+            Query query = firestore.collection(COLLECTION_NAME)
+                    .whereEqualTo("userId", userId)
+                    .whereIn("dayKey", dayKeys);
+            return getPage(query, limit, startAfter);
         }
 
-        // Sort in memory instead of in the query to avoid requiring an index
-        entries.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        Query query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThanOrEqualTo("timestamp", Date.from(startDate.atZone(zone).toInstant()))
+                .whereLessThanOrEqualTo("timestamp", Date.from(endDate.atZone(zone).toInstant()));
 
-        return entries;
+        return getPage(query, limit, startAfter);
     }
 
-    public List<CheckinEntry> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        Date startDateObj = Date.from(startDate.atZone(ZoneId.systemDefault()).toInstant());
-        Date endDateObj = Date.from(endDate.atZone(ZoneId.systemDefault()).toInstant());
+    private static boolean isWholeDays(LocalDateTime startDate, LocalDateTime endDate) {
+        return startDate.toLocalTime().equals(LocalTime.MIDNIGHT) && !endDate.toLocalTime().isBefore(END_OF_DAY);
+    }
 
+    /**
+     * Walks all of a user's entries newest first, one bounded page at a time, so the caller never holds more than
+     * a page in memory. The next page is only fetched once the consumer has handled the current one.
+     */
+    @Override
+    public void forEachEntryByUserId(String userId, CheckinEntryConsumer consumer)
+            throws ExecutionException, InterruptedException, IOException {
         Query query = firestore.collection(COLLECTION_NAME)
-                .whereEqualTo("userId", userId)
-                .whereGreaterThanOrEqualTo("timestamp", startDateObj)
-                .whereLessThanOrEqualTo("timestamp", endDateObj);
+                .whereEqualTo("userId", userId);
 
-        QuerySnapshot querySnapshot = query.get().get();
-        List<CheckinEntry> entries = new ArrayList<>();
+        String cursor = null;
+        do {
+            CheckinPage page = getPage(query, EXPORT_PAGE_SIZE, cursor).get();
+            for (CheckinEntry entry : page.getEntries()) {
+                consumer.accept(entry);
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
 
-        for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
-            entries.add(documentToCheckinEntry(document));
+    /**
+     * Orders the query newest first in Firestore (see firestore.indexes.json) and returns the page after the cursor.
+     * Without a limit the whole result is returned, still ordered by Firestore. An invalid cursor is rejected before
+     * the query is sent.
+     */
+    private CompletableFuture<CheckinPage> getPage(Query query, Integer limit, String startAfter) {
+        Query ordered = query
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+
+        if (startAfter != null && !startAfter.isEmpty()) {
+            CheckinCursor cursor = CheckinCursor.decode(startAfter);
+            ordered = ordered.startAfter(cursor.timestamp(), cursor.documentId());
         }
 
-        // Sort in memory instead of in the query to avoid requiring an index
-        entries.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : 0;
+        if (pageSize > 0) {
+            // One extra document tells us whether there is a next page
+            ordered = ordered.limit(pageSize + 1);
+        }
+
+        return metrics.firestore("listEntries", ordered::get).thenApply(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            boolean hasMore = pageSize > 0 && documents.size() > pageSize;
+            int size = hasMore ? pageSize : documents.size();
+
+            List<CheckinEntry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(documentToCheckinEntry(documents.get(i)));
+            }
+
+            String nextCursor = null;
+            if (hasMore) {
+                QueryDocumentSnapshot last = documents.get(size - 1);
+                nextCursor = new CheckinCursor(last.getTimestamp("timestamp"), last.getId()).encode();
+            }
+            return new CheckinPage(entries, nextCursor);
+        });
+    }
+
+    /**
+     * Runs the entry and the tombstone query side by side (see firestore.indexes.json), both ordered by (time, id)
+     * and limited to one more than the page, and merges them. Tombstones expire through a Firestore TTL policy on
+     * {@code expireAt}.
+     */
+    @Override
+    public CompletableFuture<CheckinChangesPage> getChangesByUserId(String userId, CheckinCursor since, int limit) {
+        CompletableFuture<List<QueryDocumentSnapshot>> entries = metrics.firestore("listChanges", () ->
+                changesQuery(COLLECTION_NAME, "updatedAt", userId, since, limit).get())
+                .thenApply(QuerySnapshot::getDocuments);
+        CompletableFuture<List<QueryDocumentSnapshot>> tombstones = since != null
+                ? metrics.firestore("listTombstones", () ->
+                        changesQuery(TOMBSTONES_COLLECTION_NAME, "deletedAt", userId, since, limit).get())
+                        .thenApply(QuerySnapshot::getDocuments)
+                : CompletableFuture.completedFuture(List.of());
+
+        return entries.thenCombine(tombstones, (entryDocuments, tombstoneDocuments) -> {
+            List<CheckinChange> changes = new ArrayList<>();
+            CheckinCursor last = null;
+            int entryIndex = 0;
+            int tombstoneIndex = 0;
+
+            while (changes.size() < limit
+                    && (entryIndex < entryDocuments.size() || tombstoneIndex < tombstoneDocuments.size())) {
+                CheckinCursor entryKey = entryIndex < entryDocuments.size()
+                        ? changeKey(entryDocuments.get(entryIndex), "updatedAt") : null;
+                CheckinCursor tombstoneKey = tombstoneIndex < tombstoneDocuments.size()
+                        ? changeKey(tombstoneDocuments.get(tombstoneIndex), "deletedAt") : null;
+
+                if (tombstoneKey == null || (entryKey != null && entryKey.compareTo(tombstoneKey) < 0)) {
+                    QueryDocumentSnapshot document = entryDocuments.get(entryIndex++);
+                    changes.add(new CheckinChange(
+                            CheckinChange.Type.MODIFIED, document.getId(), documentToCheckinEntry(document)));
+                    last = entryKey;
+                } else {
+                    changes.add(new CheckinChange(
+                            CheckinChange.Type.REMOVED, tombstoneDocuments.get(tombstoneIndex++).getId(), null));
+                    last = tombstoneKey;
+                }
+            }
+
+            boolean hasMore = entryIndex < entryDocuments.size() || tombstoneIndex < tombstoneDocuments.size();
+            return new CheckinChangesPage(changes, last != null ? last.encode() : null, hasMore);
+        });
+    }
+
+    private Query changesQuery(String collection, String timeField, String userId, CheckinCursor since, int limit) {
+        Query query = firestore.collection(collection)
+                .whereEqualTo("userId", userId)
+                .orderBy(timeField, Query.Direction.ASCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.ASCENDING);
+
+        if (since != null) {
+            query = query.startAfter(since.timestamp(), since.documentId());
+        }
+        return query.limit(limit + 1);
+    }
 
-        return entries;
+    private static CheckinCursor changeKey(DocumentSnapshot document, String timeField) {
+        return new CheckinCursor(document.getTimestamp(timeField), document.getId());
     }
 
-    public CheckinEntry createEntry(CheckinEntry entry) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<CheckinEntry> createEntry(CheckinEntry entry) {
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
         entry.setId(docRef.getId());
         entry.setCreatedAt(LocalDateTime.now());
         entry.setUpdatedAt(LocalDateTime.now());
 
         Map<String, Object> data = checkinEntryToMap(entry);
-        docRef.set(data).get();
-
-        return entry;
+        return metrics.firestore("createEntry", () -> firestore.runTransaction(transaction -> {
+            DailyRollupService.RollupChange rollupChange = dailyRollupService.prepare(transaction, null, entry);
+            transaction.set(docRef, data);
+            rollupChange.apply(transaction);
+            userDataVersionService.bump(transaction, entry.getUserId());
+            return entry;
+        }));
     }
 
-    public Optional<CheckinEntry> getEntryById(String id) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Optional<CheckinEntry>> getEntryById(String id) {
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        DocumentSnapshot document = docRef.get().get();
+        return metrics.firestore("getEntry", docRef::get).thenApply(document -> {
+            if (document.exists()) {
+                return Optional.of(documentToCheckinEntry(document));
+            } else {
+                return Optional.empty();
+            }
+        });
+    }
 
-        if (document.exists()) {
-            return Optional.of(documentToCheckinEntry(document));
-        } else {
-            return Optional.empty();
+    /**
+     * Fetches several entries in one round trip. Entries that do not exist or belong to another user are skipped.
+     */
+    @Override
+    public CompletableFuture<List<CheckinEntry>> getEntriesByIds(String userId, List<String> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
-    }
 
-    public CheckinEntry updateEntry(String id, CheckinEntry updatedEntry) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        DocumentSnapshot document = docRef.get().get();
+        DocumentReference[] docRefs = ids.stream()
+                .map(id -> firestore.collection(COLLECTION_NAME).document(id))
+                .toArray(DocumentReference[]::new);
 
-        if (!document.exists()) {
-            throw new RuntimeException("Entry not found with id: " + id);
+        return metrics.firestore("getEntries", () -> firestore.getAll(docRefs)).thenApply(documents -> {
+            List<CheckinEntry> entries = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                if (document.exists() && userId.equals(document.getString("userId"))) {
+                    entries.add(documentToCheckinEntry(document));
+                }
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Applies a list of already validated operations in a single transaction: one read of every updated or deleted
+     * document, then all writes and the rollup changes in one commit. Operations on entries that do not exist or
+     * belong to another user are reported as 404 and skipped.
+     */
+    @Override
+    public CompletableFuture<Map<Integer, CheckinBatchResult>> applyBatch(String userId,
+                                                                          Map<Integer, CheckinBatchOperation> operations) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, DocumentReference> docRefs = new HashMap<>();
+        List<DocumentReference> existingRefs = new ArrayList<>();
+
+        // Ids of new documents are assigned outside the transaction, so a retry reuses them
+        for (Map.Entry<Integer, CheckinBatchOperation> operation : operations.entrySet()) {
+            CheckinBatchOperation op = operation.getValue();
+            DocumentReference docRef;
+            if (op.getOp() == CheckinBatchOperation.Type.CREATE) {
+                docRef = firestore.collection(COLLECTION_NAME).document();
+                op.getEntry().setId(docRef.getId());
+                op.getEntry().setCreatedAt(now);
+            } else {
+                docRef = firestore.collection(COLLECTION_NAME).document(op.getId());
+                existingRefs.add(docRef);
+                if (op.getEntry() != null) {
+                    op.getEntry().setId(op.getId());
+                }
+            }
+            if (op.getEntry() != null) {
+                op.getEntry().setUserId(userId);
+                op.getEntry().setUpdatedAt(now);
+            }
+            docRefs.put(operation.getKey(), docRef);
         }
 
+        return metrics.firestore("applyBatch", () -> firestore.runTransaction(transaction -> {
+            Map<String, DocumentSnapshot> existing = new HashMap<>();
+            if (!existingRefs.isEmpty()) {
+                for (DocumentSnapshot document : transaction.getAll(existingRefs.toArray(new DocumentReference[0])).get()) {
+                    existing.put(document.getId(), document);
+                }
+            }
+
+            Map<Integer, CheckinBatchResult> results = new TreeMap<>();
+            List<Integer> accepted = new ArrayList<>();
+            List<CheckinEntry> removed = new ArrayList<>();
+            List<CheckinEntry> added = new ArrayList<>();
+
+            for (Map.Entry<Integer, CheckinBatchOperation> operation : operations.entrySet()) {
+                int index = operation.getKey();
+                CheckinBatchOperation op = operation.getValue();
+
+                if (op.getOp() == CheckinBatchOperation.Type.CREATE) {
+                    added.add(op.getEntry());
+                    CheckinBatchResult result = new CheckinBatchResult(index, op.getOp(), op.getEntry().getId(), 201);
+                    result.setEntry(op.getEntry());
+                    results.put(index, result);
+                    accepted.add(index);
+                    continue;
+                }
+
+                DocumentSnapshot document = existing.get(op.getId());
+                if (document == null || !document.exists() || !userId.equals(document.getString("userId"))) {
+                    results.put(index, CheckinBatchResult.failed(index, op, 404, List.of("Entry not found")));
+                    continue;
+                }
+
+                CheckinEntry stored = documentToCheckinEntry(document);
+                removed.add(stored);
+                if (op.getOp() == CheckinBatchOperation.Type.UPDATE) {
+                    // Set on every attempt, a retried transaction may read a different document
+                    op.getEntry().setCreatedAt(stored.getCreatedAt());
+                    added.add(op.getEntry());
+                    CheckinBatchResult result = new CheckinBatchResult(index, op.getOp(), op.getId(), 200);
+                    result.setEntry(op.getEntry());
+                    results.put(index, result);
+                } else {
+                    results.put(index, new CheckinBatchResult(index, op.getOp(), op.getId(), 204));
+                }
+                accepted.add(index);
+            }
+
+            DailyRollupService.RollupChange rollupChange = dailyRollupService.prepare(transaction, removed, added);
+
+            for (int index : accepted) {
+                CheckinBatchOperation op = operations.get(index);
+                DocumentReference docRef = docRefs.get(index);
+                switch (op.getOp()) {
+                    case CREATE -> transaction.set(docRef, checkinEntryToMap(op.getEntry()));
+                    case UPDATE -> transaction.update(docRef, checkinEntryToMap(op.getEntry()));
+                    case DELETE -> {
+                        transaction.delete(docRef);
+                        transaction.set(tombstoneRef(op.getId()), tombstoneData(userId, now));
+                    }
+                }
+            }
+            rollupChange.apply(transaction);
+            userDataVersionService.bump(transaction, userId);
+
+            return results;
+        }));
+    }
+
+    /**
+     * Ownership and version are checked on the document read inside the transaction, which also feeds the rollups,
+     * so the whole update is one transaction. A concurrent write to the entry makes Firestore retry it, and the
+     * retry then sees the new version.
+     */
+    @Override
+    public CompletableFuture<CheckinEntry> updateEntry(String userId, String id, CheckinEntry updatedEntry,
+                                                       Long expectedVersion) {
+        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
+
         updatedEntry.setId(id);
+        updatedEntry.setUserId(userId);
         updatedEntry.setUpdatedAt(LocalDateTime.now());
 
-        Map<String, Object> data = checkinEntryToMap(updatedEntry);
-        docRef.update(data).get();
+        return metrics.firestore("updateEntry", () -> firestore.runTransaction(transaction -> {
+            CheckinEntry existing = getOwnedEntry(transaction, docRef, userId, expectedVersion);
+            updatedEntry.setCreatedAt(existing.getCreatedAt());
 
-        return updatedEntry;
+            DailyRollupService.RollupChange rollupChange = dailyRollupService.prepare(transaction, existing, updatedEntry);
+            transaction.update(docRef, checkinEntryToMap(updatedEntry));
+            rollupChange.apply(transaction);
+            userDataVersionService.bump(transaction, userId);
+            return updatedEntry;
+        }));
     }
 
-    public void deleteEntry(String id) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Void> deleteEntry(String userId, String id, Long expectedVersion) {
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(id);
-        docRef.delete().get();
+        return metrics.firestore("deleteEntry", () -> firestore.runTransaction(transaction -> {
+            CheckinEntry existing = getOwnedEntry(transaction, docRef, userId, expectedVersion);
+
+            DailyRollupService.RollupChange rollupChange = dailyRollupService.prepare(transaction, existing, null);
+            transaction.delete(docRef);
+            transaction.set(tombstoneRef(id), tombstoneData(userId, LocalDateTime.now()));
+            rollupChange.apply(transaction);
+            userDataVersionService.bump(transaction, userId);
+            return null;
+        }));
+    }
+
+    private CheckinEntry getOwnedEntry(Transaction transaction, DocumentReference docRef, String userId,
+                                       Long expectedVersion) throws ExecutionException, InterruptedException {
+        DocumentSnapshot document = transaction.get(docRef).get();
+        if (!document.exists() || !userId.equals(document.getString("userId"))) {
+            throw new EntryNotFoundException("Entry not found with id: " + docRef.getId());
+        }
+
+        CheckinEntry existing = documentToCheckinEntry(document);
+        CheckinVersions.check(existing, expectedVersion);
+        return existing;
     }
 
-    public long getEntryCountByTypeAndDateRange(String userId, CheckinEntry.CheckinType type, 
-                                               LocalDateTime startDate, LocalDateTime endDate) 
-            throws ExecutionException, InterruptedException {
-        Date startDateObj = Date.from(startDate.atZone(ZoneId.systemDefault()).toInstant());
-        Date endDateObj = Date.from(endDate.atZone(ZoneId.systemDefault()).toInstant());
+    private DocumentReference tombstoneRef(String id) {
+        return firestore.collection(TOMBSTONES_COLLECTION_NAME).document(id);
+    }
+
+    private Map<String, Object> tombstoneData(String userId, LocalDateTime deletedAt) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("deletedAt", Date.from(deletedAt.atZone(ZoneId.systemDefault()).toInstant()));
+        data.put("expireAt", Date.from(deletedAt.plus(tombstoneRetention).atZone(ZoneId.systemDefault()).toInstant()));
+        return data;
+    }
+
+    @Override
+    public CompletableFuture<CheckinStats> getStatsByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                        LocalDateTime endDate, ZoneId zone) {
+        // Whole-day ranges are answered from the daily rollups, one small document per day
+        if (isWholeDays(startDate, endDate)) {
+            return dailyRollupService.getRollups(userId, DailyRollupService.dayOf(startDate), DailyRollupService.dayOf(endDate))
+                    .thenApply(rollups -> {
+                        CheckinStatsEngine engine = new CheckinStatsEngine();
+                        for (DailyRollup rollup : rollups) {
+                            engine.addRollup(rollup);
+                        }
+                        return engine.toStats();
+                    });
+        }
 
+        Date startDateObj = Date.from(startDate.atZone(zone).toInstant());
+        Date endDateObj = Date.from(endDate.atZone(zone).toInstant());
+
+        // One query for all types, projected down to the fields the stats need
         Query query = firestore.collection(COLLECTION_NAME)
                 .whereEqualTo("userId", userId)
-                .whereEqualTo("type", type.toString())
                 .whereGreaterThanOrEqualTo("timestamp", startDateObj)
-                .whereLessThanOrEqualTo("timestamp", endDateObj);
+                .whereLessThanOrEqualTo("timestamp", endDateObj)
+                .select("type", "calories", "duration", "water", "weight", "timestamp");
+
+        return metrics.firestore("getStats", query::get).thenApply(querySnapshot -> {
+            CheckinStatsEngine engine = new CheckinStatsEngine();
+
+            for (QueryDocumentSnapshot document : querySnapshot.getDocuments()) {
+                CheckinEntry.CheckinType type = parseType(document.getString("type"));
+                engine.add(type,
+                        document.getLong("calories"),
+                        document.getLong("duration"),
+                        document.getLong("water"),
+                        document.getDouble("weight"),
+                        document.getDate("timestamp"));
+            }
+
+            return engine.toStats();
+        });
+    }
 
-        QuerySnapshot querySnapshot = query.get().get();
-        return querySnapshot.size();
+    @Override
+    public CompletableFuture<List<DailyRollup>> getDailyRollups(String userId, int startDay, int endDay) {
+        return dailyRollupService.getRollups(userId, startDay, endDay);
+    }
+
+    @Override
+    public CompletableFuture<List<CheckinStreak>> getStreaks(String userId, LocalDate today) {
+        return dailyRollupService.getStreaks(userId, today);
+    }
+
+    /**
+     * Maintenance operation: stamps every check-in stored before zones were recorded with the zone it was converted
+     * through, this server's, and the dayKey in it. Has to run on an instance in the zone the entries were written
+     * from. Each update is conditional on the document being unchanged, so entries rewritten meanwhile keep their
+     * new zone. Safe to run again, stamped entries are skipped.
+     */
+    public void backfillDayKeys() throws ExecutionException, InterruptedException {
+        Query baseQuery = firestore.collection(COLLECTION_NAME)
+                .orderBy(FieldPath.documentId())
+                .limit(BACKFILL_PAGE_SIZE);
+        String zone = ZoneId.systemDefault().getId();
+
+        int stamped = 0;
+        int skipped = 0;
+        DocumentSnapshot lastDocument = null;
+
+        while (true) {
+            Query page = lastDocument == null ? baseQuery : baseQuery.startAfter(lastDocument);
+            List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+
+            Map<String, ApiFuture<WriteResult>> updates = new LinkedHashMap<>();
+            for (QueryDocumentSnapshot document : documents) {
+                LocalDateTime timestamp = toLocalDateTime(document.get("timestamp"));
+                if (document.contains("dayKey") || timestamp == null) {
+                    continue;
+                }
+                Map<String, Object> data = new HashMap<>();
+                data.put("dayKey", DailyRollupService.dayOf(timestamp));
+                data.put("timeZone", zone);
+                updates.put(document.getId(),
+                        document.getReference().update(data, Precondition.updatedAt(document.getUpdateTime())));
+            }
+
+            for (Map.Entry<String, ApiFuture<WriteResult>> update : updates.entrySet()) {
+                try {
+                    update.getValue().get();
+                    stamped++;
+                } catch (ExecutionException e) {
+                    logger.warn("Skipped day key of check-in {}: {}", update.getKey(), e.getCause().getMessage());
+                    skipped++;
+                }
+            }
+
+            if (documents.size() < BACKFILL_PAGE_SIZE) {
+                break;
+            }
+            lastDocument = documents.get(documents.size() - 1);
+        }
+        logger.info("Stamped day keys on {} check-ins in zone {}, skipped {}; checkin.day-keys.queries-enabled can "
+                + "be switched on", stamped, zone, skipped);
+    }
+
+    /**
+     * Backed by two Firestore snapshot listeners bounded to the time of the call: one on the user's entries updated
+     * after it and one on the tombstones of entries deleted after it, so neither reads the user's history when it is
+     * (re)created. An entry that enters the result is reported as ADDED when it was also created after the call and
+     * MODIFIED otherwise; deletions are reported from the tombstones only. The two listeners are not ordered with
+     * each other, so updates of an entry already reported deleted are dropped. Callbacks run on the client's listener
+     * threads.
+     */
+    @Override
+    public Registration listen(String userId, ChangeListener listener) {
+        LocalDateTime listenedAt = LocalDateTime.now();
+        Date since = Date.from(listenedAt.atZone(ZoneId.systemDefault()).toInstant());
+        Set<String> removedIds = ConcurrentHashMap.newKeySet();
+
+        ListenerRegistration entries = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThan("updatedAt", since)
+                .orderBy("updatedAt", Query.Direction.ASCENDING)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        listener.onError(error);
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+
+                    List<CheckinChange> changes = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        QueryDocumentSnapshot document = change.getDocument();
+                        if (change.getType() == DocumentChange.Type.REMOVED || removedIds.contains(document.getId())) {
+                            continue;
+                        }
+                        CheckinEntry entry = documentToCheckinEntry(document);
+                        boolean created = entry.getCreatedAt() != null && entry.getCreatedAt().isAfter(listenedAt);
+                        changes.add(new CheckinChange(created ? CheckinChange.Type.ADDED : CheckinChange.Type.MODIFIED,
+                                document.getId(), entry));
+                    }
+                    if (!changes.isEmpty()) {
+                        listener.onChanges(changes);
+                    }
+                });
+
+        ListenerRegistration tombstones = firestore.collection(TOMBSTONES_COLLECTION_NAME)
+                .whereEqualTo("userId", userId)
+                .whereGreaterThan("deletedAt", since)
+                .orderBy("deletedAt", Query.Direction.ASCENDING)
+                .addSnapshotListener((snapshot, error) -> {
+                    if (error != null) {
+                        listener.onError(error);
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+
+                    List<CheckinChange> changes = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        // Tombstones only ever leave the result when they expire
+                        if (change.getType() == DocumentChange.Type.ADDED) {
+                            String id = change.getDocument().getId();
+                            removedIds.add(id);
+                            changes.add(new CheckinChange(CheckinChange.Type.REMOVED, id, null));
+                        }
+                    }
+                    if (!changes.isEmpty()) {
+                        listener.onChanges(changes);
+                    }
+                });
+
+        return () -> {
+            entries.remove();
+            tombstones.remove();
+        };
     }
 
     private CheckinEntry documentToCheckinEntry(DocumentSnapshot document) {
+        return dataToCheckinEntry(document.getId(), document.getData());
+    }
+
+    /**
+     * Maps the raw fields of a check-in document, as returned by {@link DocumentSnapshot#getData()}, to an entry.
+     * Works on the plain map so the mapping can be benchmarked without a Firestore backend.
+     */
+    static CheckinEntry dataToCheckinEntry(String id, Map<String, Object> data) {
         CheckinEntry entry = new CheckinEntry();
-        entry.setId(document.getId());
-        entry.setUserId(document.getString("userId"));
-        
+        entry.setId(id);
+        entry.setUserId((String) data.get("userId"));
+
+        entry.setType(parseType((String) data.get("type")));
+
+        entry.setTitle((String) data.get("title"));
+        entry.setDescription((String) data.get("description"));
+        entry.setCalories(intValue(data.get("calories")));
+        entry.setDuration(intValue(data.get("duration")));
+        entry.setWeight(data.get("weight") instanceof Number weight ? weight.doubleValue() : null);
+        entry.setWater(intValue(data.get("water")));
+
+        // Entries stored without a zone were converted through the server's
+        entry.setTimeZone((String) data.get("timeZone"));
+        entry.setTimestamp(toLocalDateTime(data.get("timestamp"), CheckinZones.zoneOf(entry)));
+        Integer dayKey = intValue(data.get("dayKey"));
+        entry.setDayKey(dayKey != null || entry.getTimestamp() == null
+                ? dayKey : DailyRollupService.dayOf(entry.getTimestamp()));
+        LocalDateTime createdAt = toLocalDateTime(data.get("createdAt"));
+        if (createdAt != null) {
+            entry.setCreatedAt(createdAt);
+        }
+        LocalDateTime updatedAt = toLocalDateTime(data.get("updatedAt"));
+        if (updatedAt != null) {
+            entry.setUpdatedAt(updatedAt);
+        }
+
+        return entry;
+    }
+
+    private static Integer intValue(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return toLocalDateTime(value, ZoneId.systemDefault());
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value, ZoneId zone) {
+        if (value instanceof Timestamp timestamp) {
+            return LocalDateTime.ofInstant(timestamp.toDate().toInstant(), zone);
+        }
+        if (value instanceof Date date) {
+            return LocalDateTime.ofInstant(date.toInstant(), zone);
+        }
+        return null;
+    }
+
+    static CheckinEntry.CheckinType parseType(String typeString) {
         // Handle type conversion with null checking and error handling
-        String typeString = document.getString("type");
         if (typeString != null && !typeString.trim().isEmpty()) {
             try {
                 // First try with the original string (in case it's already uppercase)
-                entry.setType(CheckinEntry.CheckinType.valueOf(typeString));
+                return CheckinEntry.CheckinType.valueOf(typeString);
             } catch (IllegalArgumentException e1) {
                 try {
                     // If that fails, try with uppercase conversion
-                    entry.setType(CheckinEntry.CheckinType.valueOf(typeString.toUpperCase()));
+                    return CheckinEntry.CheckinType.valueOf(typeString.toUpperCase());
                 } catch (IllegalArgumentException e2) {
                     // Log the error and provide a fallback
                     System.err.println("Invalid checkin type: " + typeString + ". Available types: " + 
                         java.util.Arrays.toString(CheckinEntry.CheckinType.values()));
-                    // Set a default type or skip this entry
                     throw new RuntimeException("Invalid checkin type: " + typeString + 
                         ". Expected one of: " + java.util.Arrays.toString(CheckinEntry.CheckinType.values()), e2);
                 }
@@ -168,33 +713,9 @@ public class FirebaseFirestoreService {
         } else {
             throw new RuntimeException("Checkin type cannot be null or empty");
         }
-        
-        entry.setTitle(document.getString("title"));
-        entry.setDescription(document.getString("description"));
-        entry.setCalories(document.getLong("calories") != null ? document.getLong("calories").intValue() : null);
-        entry.setDuration(document.getLong("duration") != null ? document.getLong("duration").intValue() : null);
-        entry.setWeight(document.getDouble("weight"));
-        entry.setWater(document.getLong("water") != null ? document.getLong("water").intValue() : null);
-        
-        if (document.getTimestamp("timestamp") != null) {
-            entry.setTimestamp(document.getTimestamp("timestamp").toDate().toInstant()
-                    .atZone(ZoneId.systemDefault()).toLocalDateTime());
-        }
-        
-        if (document.getTimestamp("createdAt") != null) {
-            entry.setCreatedAt(document.getTimestamp("createdAt").toDate().toInstant()
-                    .atZone(ZoneId.systemDefault()).toLocalDateTime());
-        }
-        
-        if (document.getTimestamp("updatedAt") != null) {
-            entry.setUpdatedAt(document.getTimestamp("updatedAt").toDate().toInstant()
-                    .atZone(ZoneId.systemDefault()).toLocalDateTime());
-        }
-
-        return entry;
     }
 
-    private Map<String, Object> checkinEntryToMap(CheckinEntry entry) {
+    static Map<String, Object> checkinEntryToMap(CheckinEntry entry) {
         Map<String, Object> data = new HashMap<>();
         data.put("userId", entry.getUserId());
         data.put("type", entry.getType().toString());
@@ -204,7 +725,10 @@ public class FirebaseFirestoreService {
         data.put("duration", entry.getDuration());
         data.put("weight", entry.getWeight());
         data.put("water", entry.getWater());
-        data.put("timestamp", Date.from(entry.getTimestamp().atZone(ZoneId.systemDefault()).toInstant()));
+        data.put("timestamp", Date.from(CheckinZones.instantOf(entry)));
+        data.put("dayKey",
+                entry.getDayKey() != null ? entry.getDayKey() : DailyRollupService.dayOf(entry.getTimestamp()));
+        data.put("timeZone", CheckinZones.zoneOf(entry).getId());
         data.put("createdAt", Date.from(entry.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant()));
         data.put("updatedAt", Date.from(entry.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant()));
         return data;
@@ -0,0 +1,117 @@
+package com.smartfit.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Verifies Firebase ID tokens locally: RS256 signature against Google's cached signing keys, plus the
+ * aud/iss/sub/exp/iat/auth_time checks the Admin SDK performs.
+ */
+@Component
+public class FirebaseIdTokenVerifier {
+
+    private static final String ISSUER_PREFIX = "https://securetoken.google.com/";
+    private static final long CLOCK_SKEW_SECONDS = 60;
+
+    private final GoogleSigningKeyProvider keyProvider;
+    private final ObjectMapper objectMapper;
+    private final JwtParser parser;
+
+    public FirebaseIdTokenVerifier(GoogleSigningKeyProvider keyProvider,
+                                   ObjectMapper objectMapper,
+                                   @Value("${firebase.project-id}") String projectId) {
+        this.keyProvider = keyProvider;
+        this.objectMapper = objectMapper;
+        this.parser = Jwts.parser()
+            .keyLocator(new LocatorAdapter<Key>() {
+                @Override
+                protected Key locate(JwsHeader header) {
+                    return keyProvider.getKey(header.getKeyId());
+                }
+            })
+            .requireAudience(projectId)
+            .requireIssuer(ISSUER_PREFIX + projectId)
+            .clockSkewSeconds(CLOCK_SKEW_SECONDS)
+            .build();
+    }
+
+    public boolean isReady() {
+        return keyProvider.isReady();
+    }
+
+    /**
+     * Returns the verified token, or throws {@link JwtException} if it is not a valid Firebase ID token.
+     * Throws {@link SigningKeyUnavailableException} if the token may be valid but is signed with a key we do not have yet.
+     */
+    public VerifiedIdToken verify(String idToken) {
+        // Check the header before handing the token to the parser, so an unknown key id is distinguishable
+        // from a bad signature
+        JsonNode header = readHeader(idToken);
+        if (!"RS256".equals(header.path("alg").asText())) {
+            throw new JwtException("Firebase ID token has incorrect algorithm");
+        }
+        PublicKey key = keyProvider.getKey(header.path("kid").asText(null));
+        if (key == null) {
+            throw new SigningKeyUnavailableException("No signing key for Firebase ID token key id");
+        }
+
+        Claims claims = parser.parseSignedClaims(idToken).getPayload();
+
+        String subject = claims.getSubject();
+        if (subject == null || subject.isEmpty() || subject.length() > 128) {
+            throw new JwtException("Firebase ID token has invalid subject");
+        }
+
+        long latestAllowed = Instant.now().getEpochSecond() + CLOCK_SKEW_SECONDS;
+        Date issuedAt = claims.getIssuedAt();
+        if (issuedAt == null || issuedAt.toInstant().getEpochSecond() > latestAllowed) {
+            throw new JwtException("Firebase ID token has invalid issued-at time");
+        }
+        Number authTime = claims.get("auth_time", Number.class);
+        if (authTime == null || authTime.longValue() > latestAllowed) {
+            throw new JwtException("Firebase ID token has invalid auth time");
+        }
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            throw new JwtException("Firebase ID token has no expiration");
+        }
+
+        return new VerifiedIdToken(subject, expiration.toInstant().getEpochSecond());
+    }
+
+    private JsonNode readHeader(String idToken) {
+        int dot = idToken.indexOf('.');
+        if (dot <= 0) {
+            throw new JwtException("Malformed Firebase ID token");
+        }
+        try {
+            return objectMapper.readTree(Base64.getUrlDecoder().decode(idToken.substring(0, dot)));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new JwtException("Malformed Firebase ID token header", e);
+        }
+    }
+
+    public record VerifiedIdToken(String userId, long expiresAt) {
+    }
+
+    public static class SigningKeyUnavailableException extends JwtException {
+        public SigningKeyUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
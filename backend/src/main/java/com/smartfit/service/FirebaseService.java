@@ -1,79 +1,92 @@
 package com.smartfit.service;
 
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.firebase.FirebaseApp;
-import com.google.firebase.FirebaseOptions;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
-import com.google.firebase.cloud.FirestoreClient;
-import com.google.cloud.firestore.Firestore;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PostConstruct;
-import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 
 @Service
 public class FirebaseService {
 
-    @Value("${firebase.project-id}")
-    private String projectId;
+    @Value("${firebase.auth.local-verification:true}")
+    private boolean localVerification;
 
-    @Value("${firebase.credentials-file}")
-    private String credentialsFile;
+    private final FirebaseTokenCache tokenCache;
+    private final FirebaseIdTokenVerifier idTokenVerifier;
+    private final OperationMetrics metrics;
 
-    private FirebaseAuth firebaseAuth;
-    
-    @SuppressWarnings("unused")
-    private Firestore firestore;
+    // Created on first use, see FirebaseConfig
+    private final ObjectProvider<FirebaseAuth> firebaseAuth;
 
-    @PostConstruct
-    public void initialize() throws IOException {
-        try {
-            GoogleCredentials credentials = GoogleCredentials.fromStream(
-                new ClassPathResource(credentialsFile).getInputStream()
-            );
+    public FirebaseService(FirebaseTokenCache tokenCache, FirebaseIdTokenVerifier idTokenVerifier,
+                           OperationMetrics metrics, ObjectProvider<FirebaseAuth> firebaseAuth) {
+        this.tokenCache = tokenCache;
+        this.idTokenVerifier = idTokenVerifier;
+        this.metrics = metrics;
+        this.firebaseAuth = firebaseAuth;
+    }
+
+    public FirebaseToken verifyIdToken(String idToken) throws ExecutionException, InterruptedException {
+        return firebaseAuth.getObject().verifyIdTokenAsync(idToken).get();
+    }
 
-            FirebaseOptions options = FirebaseOptions.builder()
-                .setCredentials(credentials)
-                .setProjectId(projectId)
-                .build();
+    /**
+     * Timed per path the token took: cache, local (verified here) or admin (verified by the Admin SDK).
+     */
+    public String getUserIdFromToken(String idToken) throws ExecutionException, InterruptedException {
+        Timer.Sample sample = metrics.start();
+        String path = "cache";
+        String outcome = OperationMetrics.ERROR;
+        try {
+            String cachedUserId = tokenCache.getUserId(idToken);
+            if (cachedUserId != null) {
+                outcome = OperationMetrics.SUCCESS;
+                return cachedUserId;
+            }
 
-            // Check if Firebase is already initialized
-            if (FirebaseApp.getApps().isEmpty()) {
-                FirebaseApp.initializeApp(options);
-            } else {
-                // If already initialized, get the default app
-                FirebaseApp app = FirebaseApp.getInstance();
-                if (app == null) {
-                    FirebaseApp.initializeApp(options);
+            if (localVerification && idTokenVerifier.isReady()) {
+                path = "local";
+                try {
+                    FirebaseIdTokenVerifier.VerifiedIdToken verifiedToken = idTokenVerifier.verify(idToken);
+                    tokenCache.put(idToken, verifiedToken.userId(), verifiedToken.expiresAt());
+                    outcome = OperationMetrics.SUCCESS;
+                    return verifiedToken.userId();
+                } catch (FirebaseIdTokenVerifier.SigningKeyUnavailableException e) {
+                    // Signed with a key we have not fetched yet, let the Admin SDK decide
                 }
             }
 
-            this.firebaseAuth = FirebaseAuth.getInstance();
-            this.firestore = FirestoreClient.getFirestore();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize Firebase", e);
+            path = "admin";
+            FirebaseToken decodedToken = verifyIdToken(idToken);
+            tokenCache.put(idToken, decodedToken.getUid(), getExpiration(decodedToken));
+            outcome = OperationMetrics.SUCCESS;
+            return decodedToken.getUid();
+        } finally {
+            metrics.stop(sample, OperationMetrics.AUTH, path, outcome);
         }
     }
 
-    public FirebaseToken verifyIdToken(String idToken) throws ExecutionException, InterruptedException {
-        return firebaseAuth.verifyIdTokenAsync(idToken).get();
+    /**
+     * Verifies the token at most once and returns its user id, or null if the token is not valid.
+     */
+    public String getUserIdIfValid(String idToken) {
+        try {
+            return getUserIdFromToken(idToken);
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    public String getUserIdFromToken(String idToken) throws ExecutionException, InterruptedException {
-        FirebaseToken decodedToken = verifyIdToken(idToken);
-        return decodedToken.getUid();
+    public boolean isValidToken(String idToken) {
+        return getUserIdIfValid(idToken) != null;
     }
 
-    public boolean isValidToken(String idToken) {
-        try {
-            verifyIdToken(idToken);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    private long getExpiration(FirebaseToken decodedToken) {
+        Object exp = decodedToken.getClaims().get("exp");
+        return exp instanceof Number ? ((Number) exp).longValue() : 0L;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.smartfit.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of already verified Firebase ID tokens.
+ *
+ * Entries are keyed by the SHA-256 digest of the raw token, so the tokens themselves are never kept in memory,
+ * and never outlive the token's own "exp" claim. Once the cache is full the oldest entries are evicted first,
+ * which for Firebase tokens (fixed one hour lifetime) also means the ones closest to expiry.
+ */
+@Component
+public class FirebaseTokenCache {
+
+    private final ConcurrentHashMap<String, CachedToken> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int maxSize;
+
+    public FirebaseTokenCache(@Value("${firebase.token-cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the user id of a previously verified, not yet expired token, or null when the token has to be verified.
+     */
+    public String getUserId(String idToken) {
+        CachedToken cached = tokens.get(digest(idToken));
+        if (cached != null && cached.expiresAt() > Instant.now().getEpochSecond()) {
+            hits.increment();
+            return cached.userId();
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String idToken, String userId, long expiresAtEpochSeconds) {
+        long now = Instant.now().getEpochSecond();
+        if (maxSize <= 0 || expiresAtEpochSeconds <= now) {
+            return;
+        }
+
+        String key = digest(idToken);
+        if (tokens.put(key, new CachedToken(userId, expiresAtEpochSeconds)) == null) {
+            insertionOrder.add(key);
+        }
+        evict(now);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    private void evict(long now) {
+        // Drop expired entries from the head first, then enforce the size bound
+        String eldest;
+        while ((eldest = insertionOrder.peek()) != null) {
+            CachedToken cached = tokens.get(eldest);
+            boolean expired = cached == null || cached.expiresAt() <= now;
+            if (!expired && tokens.size() <= maxSize) {
+                break;
+            }
+            if (insertionOrder.remove(eldest)) {
+                tokens.remove(eldest);
+            }
+        }
+    }
+
+    private static String digest(String idToken) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(idToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedToken(String userId, long expiresAt) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.smartfit.service;
 
 import com.google.firebase.auth.FirebaseAuth;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,9 +15,9 @@ import java.util.Collections;
 public class FirebaseUserDetailsService implements UserDetailsService {
 
     @SuppressWarnings("unused")
-    private final FirebaseAuth firebaseAuth;
+    private final ObjectProvider<FirebaseAuth> firebaseAuth;
 
-    public FirebaseUserDetailsService(FirebaseAuth firebaseAuth) {
+    public FirebaseUserDetailsService(ObjectProvider<FirebaseAuth> firebaseAuth) {
         this.firebaseAuth = firebaseAuth;
     }
 
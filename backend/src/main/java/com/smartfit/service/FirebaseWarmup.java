@@ -0,0 +1,102 @@
+package com.smartfit.service;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.firebase.auth.FirebaseAuth;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the Firebase app and clients in the background once the application has started, and opens the Firestore
+ * gRPC channel with a single document read, so that no request pays for either.
+ *
+ * As a health indicator it is part of the readiness group (see application.yml): an instance reports ready, and
+ * gets traffic, only once warm. Failed attempts are retried with a growing delay.
+ */
+@Component
+public class FirebaseWarmup implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseWarmup.class);
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+    // Not a Firebase uid, so never an actual settings document
+    private static final String WARMUP_DOCUMENT = "_warmup";
+
+    private final ObjectProvider<FirebaseAuth> firebaseAuth;
+    private final ObjectProvider<Firestore> firestore;
+    private final FirebaseIdTokenVerifier idTokenVerifier;
+    private final boolean localVerification;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "firebase-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean warm;
+    private volatile String lastError;
+
+    public FirebaseWarmup(ObjectProvider<FirebaseAuth> firebaseAuth, ObjectProvider<Firestore> firestore,
+                          FirebaseIdTokenVerifier idTokenVerifier,
+                          @Value("${firebase.auth.local-verification:true}") boolean localVerification) {
+        this.firebaseAuth = firebaseAuth;
+        this.firestore = firestore;
+        this.idTokenVerifier = idTokenVerifier;
+        this.localVerification = localVerification;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        scheduler.execute(() -> warm(FIRST_RETRY_DELAY));
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public Health health() {
+        // Tokens are verified by the Admin SDK until the signing keys are in, so they are reported but not waited for
+        Health.Builder health = warm ? Health.up() : Health.outOfService();
+        if (localVerification) {
+            health.withDetail("signingKeys", idTokenVerifier.isReady() ? "ready" : "pending");
+        }
+        if (!warm && lastError != null) {
+            health.withDetail("error", lastError);
+        }
+        return health.build();
+    }
+
+    private void warm(Duration retryDelay) {
+        long start = System.nanoTime();
+        try {
+            firebaseAuth.getObject();
+            firestore.getObject().collection(SettingsService.COLLECTION_NAME).document(WARMUP_DOCUMENT).get()
+                    .get(READ_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            warm = true;
+            lastError = null;
+            logger.info("Firebase warm after {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastError = e.toString();
+            logger.warn("Firebase warm-up failed, retrying in {}: {}", retryDelay, e.toString());
+            Duration nextDelay = retryDelay.multipliedBy(2);
+            scheduler.schedule(() -> warm(nextDelay.compareTo(MAX_RETRY_DELAY) < 0 ? nextDelay : MAX_RETRY_DELAY),
+                    retryDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
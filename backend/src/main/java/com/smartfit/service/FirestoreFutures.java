@@ -0,0 +1,46 @@
+package com.smartfit.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bridges the {@link ApiFuture}s of the Firestore client to {@link CompletableFuture}s, so callers can compose
+ * results instead of blocking a request thread on {@code get()}.
+ */
+public final class FirestoreFutures {
+
+    private FirestoreFutures() {
+    }
+
+    /**
+     * Completes on the client's own callback thread; stages added with the non-async {@code then*} methods run
+     * there too, so they must not block. Cancelling the returned future cancels the RPC.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                apiFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+}
@@ -0,0 +1,145 @@
+package com.smartfit.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps Google's current Firebase ID token signing keys in memory.
+ *
+ * The keys are fetched in the background and refreshed shortly before the max-age announced by Google runs out,
+ * so verifying a token never has to wait for the network. An unknown key id (a rotation we have not seen yet)
+ * schedules an early refresh, rate limited to one per minute.
+ */
+@Component
+public class GoogleSigningKeyProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(GoogleSigningKeyProvider.class);
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+    private static final Duration DEFAULT_REFRESH = Duration.ofHours(1);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration MIN_FORCED_REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private final RestTemplate restTemplate;
+    private final String keysUrl;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "firebase-signing-keys");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong lastForcedRefresh = new AtomicLong();
+
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    // Only touched from the scheduler thread
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public GoogleSigningKeyProvider(
+            RestTemplate restTemplate,
+            @Value("${firebase.auth.signing-keys-url:https://www.googleapis.com/robot/v1/metadata/x509/securetoken@system.gserviceaccount.com}")
+            String keysUrl) {
+        this.restTemplate = restTemplate;
+        this.keysUrl = keysUrl;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.execute(this::refresh);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return !keys.isEmpty();
+    }
+
+    /**
+     * Returns the public key for the given key id, or null if it is unknown to the last fetched key set.
+     */
+    public PublicKey getKey(String keyId) {
+        PublicKey key = keyId != null ? keys.get(keyId) : null;
+        if (key == null) {
+            requestRefresh();
+        }
+        return key;
+    }
+
+    private void requestRefresh() {
+        long now = System.currentTimeMillis();
+        long last = lastForcedRefresh.get();
+        if (now - last >= MIN_FORCED_REFRESH_INTERVAL.toMillis() && lastForcedRefresh.compareAndSet(last, now)) {
+            scheduler.execute(this::refresh);
+        }
+    }
+
+    private void refresh() {
+        Duration nextRefresh;
+        try {
+            ResponseEntity<Map<String, String>> response = restTemplate.exchange(
+                keysUrl, HttpMethod.GET, null, new ParameterizedTypeReference<Map<String, String>>() {});
+
+            Map<String, String> certificates = response.getBody();
+            if (certificates == null || certificates.isEmpty()) {
+                throw new IllegalStateException("Empty signing key response");
+            }
+
+            Map<String, PublicKey> parsedKeys = new HashMap<>();
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            for (Map.Entry<String, String> certificate : certificates.entrySet()) {
+                X509Certificate x509 = (X509Certificate) certificateFactory.generateCertificate(
+                    new ByteArrayInputStream(certificate.getValue().getBytes(StandardCharsets.UTF_8)));
+                parsedKeys.put(certificate.getKey(), x509.getPublicKey());
+            }
+            keys = Collections.unmodifiableMap(parsedKeys);
+
+            // Refresh a little before the announced max-age so rotated keys are in place ahead of use
+            nextRefresh = getMaxAge(response.getHeaders().getCacheControl()).multipliedBy(9).dividedBy(10);
+        } catch (Exception e) {
+            logger.warn("Failed to fetch Firebase signing keys from {}", keysUrl, e);
+            nextRefresh = RETRY_DELAY;
+        }
+
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        if (!scheduler.isShutdown()) {
+            scheduledRefresh = scheduler.schedule(this::refresh, nextRefresh.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Duration getMaxAge(String cacheControl) {
+        if (cacheControl != null) {
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                return Duration.ofSeconds(Long.parseLong(matcher.group(1)));
+            }
+        }
+        return DEFAULT_REFRESH;
+    }
+}
@@ -0,0 +1,52 @@
+package com.smartfit.service;
+
+import com.smartfit.model.UserSettings;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Settings kept in memory, standing in for the Firestore-backed {@link SettingsService} in the loadtest profile,
+ * which runs without a Firebase project. Same defaults, validation and time zone handling; nothing survives a
+ * restart. Caching and versions work as with Firestore.
+ */
+public class InMemorySettingsService extends SettingsService {
+
+    private final ConcurrentHashMap<String, UserSettings> settingsByUser = new ConcurrentHashMap<>();
+    private final UserDataVersionService userDataVersionService;
+
+    public InMemorySettingsService(SettingsCache settingsCache, UserDataVersionService userDataVersionService,
+                                   OperationMetrics metrics) {
+        // Never touches Firestore, every method that would is overridden
+        super(null, settingsCache, userDataVersionService, metrics);
+        this.userDataVersionService = userDataVersionService;
+    }
+
+    @Override
+    protected CompletableFuture<UserSettings> loadUserSettings(String userId) {
+        UserSettings settings = settingsByUser.get(userId);
+        return CompletableFuture.completedFuture(settings != null ? settings : new UserSettings(userId));
+    }
+
+    // The version is bumped once the save completes, as for every write of this profile
+    @Override
+    protected CompletableFuture<StoredSettings> storeUserSettings(UserSettings settings) {
+        long version = userDataVersionService.getVersion(settings.getUserId());
+        settings.setId(settings.getUserId());
+        settingsByUser.compute(settings.getUserId(), (userId, existing) -> {
+            LocalDateTime now = LocalDateTime.now();
+            settings.setUpdatedAt(now);
+            settings.setCreatedAt(existing != null ? existing.getCreatedAt() : now);
+            if (settings.getTimeZone() == null && existing != null) {
+                settings.setTimeZone(existing.getTimeZone());
+            }
+            return settings;
+        });
+        return CompletableFuture.completedFuture(new StoredSettings(settings, version + 1));
+    }
+
+    @Override
+    public void migrateLegacyDocuments() {
+    }
+}
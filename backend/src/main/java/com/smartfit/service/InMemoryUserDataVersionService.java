@@ -0,0 +1,46 @@
+package com.smartfit.service;
+
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.UpdateBuilder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Versions kept in memory, standing in for the Firestore-backed {@link UserDataVersionService} in the embedded
+ * profile, where all check-ins live in the local log of a single instance. The per-instance count of writes serves
+ * as the shared version; a random epoch in every ETag makes sure ETags handed out before a restart never match again.
+ */
+@Service
+@Profile("embedded")
+public class InMemoryUserDataVersionService extends UserDataVersionService {
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    public InMemoryUserDataVersionService(OperationMetrics metrics) {
+        // Never touches Firestore, every method that would is overridden
+        super(null, metrics);
+    }
+
+    // Settings writes still go to Firestore, they are counted once they complete like every other write
+    @Override
+    public long readVersion(Transaction transaction, String userId) {
+        return getVersion(userId);
+    }
+
+    @Override
+    public void bump(UpdateBuilder<?> write, String userId) {
+    }
+
+    @Override
+    public CompletableFuture<Long> getSharedVersion(String userId) {
+        return CompletableFuture.completedFuture(getVersion(userId));
+    }
+
+    @Override
+    protected String etag(String userId, long version) {
+        return "\"" + epoch + "-" + Integer.toHexString(userId.hashCode()) + "-" + version + "\"";
+    }
+}
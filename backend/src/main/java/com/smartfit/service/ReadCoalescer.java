@@ -0,0 +1,69 @@
+package com.smartfit.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for reads: concurrent identical reads share one in-flight store call instead of each issuing their
+ * own, e.g. when the dashboard of several tabs loads at once after a login.
+ *
+ * A read is only joined while it is still in flight, nothing is cached after it completes. The key includes the
+ * user's data version from {@link UserDataVersionService}, which every write bumps before its response is sent, so a
+ * read that starts after a write never joins one that may have missed it. Coalesced reads are counted per
+ * operation in smartfit.reads.coalesced.
+ */
+@Component
+public class ReadCoalescer {
+
+    private final Map<List<Object>, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final UserDataVersionService userDataVersionService;
+    private final MeterRegistry registry;
+
+    public ReadCoalescer(UserDataVersionService userDataVersionService, MeterRegistry registry) {
+        this.userDataVersionService = userDataVersionService;
+        this.registry = registry;
+    }
+
+    /**
+     * Runs the read, or joins the identical one in flight. The parameters must identify the read completely and
+     * may be null. Every caller gets its own copy of the shared future, so cancelling one does not affect the others.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> read(String operation, String userId, Supplier<CompletableFuture<T>> call,
+                                         Object... parameters) {
+        List<Object> key = Arrays.asList(operation, userId, userDataVersionService.getVersion(userId),
+                Arrays.asList(parameters));
+
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            Counter.builder("smartfit.reads.coalesced").tag("operation", operation).register(registry).increment();
+            return existing.copy();
+        }
+
+        try {
+            call.get().whenComplete((result, error) -> {
+                inFlight.remove(key, shared);
+                if (error != null) {
+                    shared.completeExceptionally(error);
+                } else {
+                    shared.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected before anything was issued, e.g. an invalid cursor; the caller gets the exception as before
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+        return shared.copy();
+    }
+}
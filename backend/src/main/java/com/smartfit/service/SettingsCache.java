@@ -0,0 +1,122 @@
+package com.smartfit.service;
+
+import com.smartfit.model.UserSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache of user settings, kept current by {@link SettingsService} writing every save through it.
+ *
+ * Every entry carries the user's data version (see {@link UserDataVersionService}) it was loaded or saved at, and is
+ * only returned while no newer version exists, so a save made through another instance is seen on the next read.
+ * Entries also expire after a fixed time and once the cache is full the oldest entries are evicted first; both
+ * only bound its memory.
+ */
+@Component
+public class SettingsCache {
+
+    private final ConcurrentHashMap<String, CachedSettings> settings = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    public SettingsCache(@Value("${settings.cache.max-size:10000}") int maxSize,
+                         @Value("${settings.cache.ttl:5m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the cached settings of the user, or null when they have to be loaded because they are missing, expired
+     * or older than the given data version.
+     */
+    public UserSettings get(String userId, long version) {
+        CachedSettings cached = settings.get(userId);
+        if (cached != null && cached.version() >= version && cached.expiresAt() - System.nanoTime() > 0) {
+            hits.increment();
+            return cached.settings();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches settings that were just saved, as of the data version the save produced, replacing whatever was cached
+     * before.
+     */
+    public void put(UserSettings userSettings, long version) {
+        store(userSettings, version, true);
+    }
+
+    /**
+     * Caches settings that were just loaded, as of the data version read before loading them, unless a save has
+     * cached newer ones in the meantime.
+     */
+    public void putLoaded(UserSettings userSettings, long version) {
+        store(userSettings, version, false);
+    }
+
+    public void invalidate(String userId) {
+        settings.remove(userId);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return settings.size();
+    }
+
+    private void store(UserSettings userSettings, long version, boolean replace) {
+        if (maxSize <= 0) {
+            return;
+        }
+
+        String userId = userSettings.getUserId();
+        long now = System.nanoTime();
+        CachedSettings cached = new CachedSettings(userSettings, version, now + ttlNanos);
+        CachedSettings previous;
+        if (replace) {
+            previous = settings.put(userId, cached);
+        } else {
+            previous = settings.putIfAbsent(userId, cached);
+            if (previous != null && (previous.version() < version || previous.expiresAt() - now <= 0)) {
+                settings.replace(userId, previous, cached);
+            }
+        }
+        if (previous == null) {
+            insertionOrder.add(userId);
+        }
+        evict(now);
+    }
+
+    private void evict(long now) {
+        // Drop expired entries from the head first, then enforce the size bound
+        String eldest;
+        while ((eldest = insertionOrder.peek()) != null) {
+            CachedSettings cached = settings.get(eldest);
+            boolean expired = cached == null || cached.expiresAt() - now <= 0;
+            if (!expired && settings.size() <= maxSize) {
+                break;
+            }
+            if (insertionOrder.remove(eldest)) {
+                settings.remove(eldest);
+            }
+        }
+    }
+
+    private record CachedSettings(UserSettings settings, long version, long expiresAt) {
+    }
+}
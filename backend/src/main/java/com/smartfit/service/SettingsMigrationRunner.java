@@ -0,0 +1,26 @@
+package com.smartfit.service;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off job that moves settings documents keyed by auto ids to {@code settings/{userId}} at startup, enabled with
+ * {@code settings.migrate-on-startup=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "settings.migrate-on-startup", havingValue = "true")
+public class SettingsMigrationRunner implements ApplicationRunner {
+
+    private final SettingsService settingsService;
+
+    public SettingsMigrationRunner(SettingsService settingsService) {
+        this.settingsService = settingsService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        settingsService.migrateLegacyDocuments();
+    }
+}
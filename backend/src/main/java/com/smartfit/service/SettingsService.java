@@ -1,81 +1,188 @@
 package com.smartfit.service;
 
 import com.google.cloud.firestore.*;
+import com.smartfit.exception.InvalidTimeZoneException;
 import com.smartfit.model.UserSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+/**
+ * User settings, stored one document per user at {@code settings/{userId}} and read through {@link SettingsCache}.
+ *
+ * Older documents were keyed by auto ids and found by querying on userId; {@link #migrateLegacyDocuments} moves
+ * them to their direct keys once.
+ */
 @Service
 public class SettingsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SettingsService.class);
+    static final String COLLECTION_NAME = "settings";
+    private static final int MIGRATION_PAGE_SIZE = 500;
+
     private final Firestore firestore;
-    private static final String COLLECTION_NAME = "settings";
+    private final SettingsCache settingsCache;
+    private final UserDataVersionService userDataVersionService;
+    private final OperationMetrics metrics;
 
     @Autowired
-    public SettingsService(Firestore firestore) {
+    public SettingsService(@Lazy Firestore firestore, SettingsCache settingsCache,
+                           UserDataVersionService userDataVersionService, OperationMetrics metrics) {
         this.firestore = firestore;
+        this.settingsCache = settingsCache;
+        this.userDataVersionService = userDataVersionService;
+        this.metrics = metrics;
     }
 
-    public UserSettings getUserSettings(String userId) throws ExecutionException, InterruptedException {
-        // Query for settings by userId
-        Query query = firestore.collection(COLLECTION_NAME)
-                .whereEqualTo("userId", userId)
-                .limit(1);
-
-        QuerySnapshot querySnapshot = query.get().get();
-
-        if (!querySnapshot.isEmpty()) {
-            // Return existing settings
-            DocumentSnapshot document = querySnapshot.getDocuments().get(0);
-            return documentToUserSettings(document);
-        } else {
-            // Return default settings if none exist
-            return new UserSettings(userId);
-        }
+    /**
+     * The user's settings, from the cache unless another instance has changed the user's data since they were
+     * cached. Checking costs one read of the shared data version.
+     */
+    public CompletableFuture<UserSettings> getUserSettings(String userId) {
+        // The version is read first, so whatever is loaded afterwards is at least as new
+        return userDataVersionService.getSharedVersion(userId).thenCompose(version -> {
+            UserSettings cached = settingsCache.get(userId, version);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return loadUserSettings(userId).thenApply(settings -> {
+                settingsCache.putLoaded(settings, version);
+                return settings;
+            });
+        });
+    }
+
+    /**
+     * Upserts the settings, keeping the original createdAt and the time zone when none is sent, then writes them
+     * through the cache.
+     */
+    public CompletableFuture<UserSettings> saveUserSettings(UserSettings settings) {
+        checkTimeZone(settings);
+
+        return storeUserSettings(settings)
+                .whenComplete((stored, error) -> {
+                    if (error == null) {
+                        settingsCache.put(stored.settings(), stored.version());
+                    } else {
+                        // The commit may have gone through anyway
+                        settingsCache.invalidate(settings.getUserId());
+                    }
+                    userDataVersionService.bump(settings.getUserId());
+                })
+                .thenApply(StoredSettings::settings);
+    }
+
+    // Default settings if none exist, cached as well so new users do not keep reaching Firestore
+    protected CompletableFuture<UserSettings> loadUserSettings(String userId) {
+        return metrics.firestore("getSettings", () -> settingsRef(userId).get()).thenApply(document ->
+                document.exists() ? documentToUserSettings(document) : new UserSettings(userId));
     }
 
-    public UserSettings saveUserSettings(UserSettings settings) throws ExecutionException, InterruptedException {
-        // Check if settings already exist for this user
-        Query query = firestore.collection(COLLECTION_NAME)
-                .whereEqualTo("userId", settings.getUserId())
-                .limit(1);
-
-        QuerySnapshot querySnapshot = query.get().get();
-
-        if (!querySnapshot.isEmpty()) {
-            // Update existing settings
-            DocumentSnapshot existingDoc = querySnapshot.getDocuments().get(0);
-            String docId = existingDoc.getId();
-            
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(docId);
-            settings.setId(docId);
-            settings.setUpdatedAt(LocalDateTime.now());
+    // One transaction, which also moves the user's data version on, so the saved settings can be cached at it
+    protected CompletableFuture<StoredSettings> storeUserSettings(UserSettings settings) {
+        DocumentReference docRef = settingsRef(settings.getUserId());
+
+        return metrics.firestore("saveSettings", () -> firestore.runTransaction(transaction -> {
+            DocumentSnapshot existingDoc = transaction.get(docRef).get();
+            long version = userDataVersionService.readVersion(transaction, settings.getUserId());
+
+            LocalDateTime now = LocalDateTime.now();
+            settings.setId(docRef.getId());
+            settings.setUpdatedAt(now);
             // Preserve createdAt from existing document
-            if (existingDoc.contains("createdAt")) {
-                settings.setCreatedAt(documentToUserSettings(existingDoc).getCreatedAt());
-            } else {
-                settings.setCreatedAt(LocalDateTime.now());
+            UserSettings existing = existingDoc.exists() ? documentToUserSettings(existingDoc) : null;
+            LocalDateTime createdAt = existing != null ? existing.getCreatedAt() : null;
+            settings.setCreatedAt(createdAt != null ? createdAt : now);
+            // Clients that do not know about zones keep the one already set
+            if (settings.getTimeZone() == null && existing != null) {
+                settings.setTimeZone(existing.getTimeZone());
             }
 
-            Map<String, Object> data = userSettingsToMap(settings);
-            docRef.set(data).get(); // Use set() to replace the entire document
-        } else {
-            // Create new settings
-            DocumentReference docRef = firestore.collection(COLLECTION_NAME).document();
-            settings.setId(docRef.getId());
-            settings.setCreatedAt(LocalDateTime.now());
-            settings.setUpdatedAt(LocalDateTime.now());
+            transaction.set(docRef, userSettingsToMap(settings));
+            userDataVersionService.bump(transaction, settings.getUserId());
+            return new StoredSettings(settings, version + 1);
+        }));
+    }
 
-            Map<String, Object> data = userSettingsToMap(settings);
-            docRef.set(data).get();
+    /**
+     * Maintenance operation: moves every settings document still keyed by an auto id to {@code settings/{userId}}.
+     * A document already at the direct key was saved after the switch and wins; the legacy one is deleted either way.
+     * Safe to run again, documents that are already migrated are skipped.
+     */
+    public void migrateLegacyDocuments() throws ExecutionException, InterruptedException {
+        Query baseQuery = firestore.collection(COLLECTION_NAME)
+                .orderBy(FieldPath.documentId())
+                .limit(MIGRATION_PAGE_SIZE);
+
+        int migrated = 0;
+        int superseded = 0;
+        DocumentSnapshot lastDocument = null;
+
+        while (true) {
+            Query page = lastDocument == null ? baseQuery : baseQuery.startAfter(lastDocument);
+            List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+
+            for (QueryDocumentSnapshot document : documents) {
+                String userId = document.getString("userId");
+                if (userId == null || userId.isEmpty() || userId.equals(document.getId())) {
+                    continue;
+                }
+
+                DocumentReference legacyRef = document.getReference();
+                DocumentReference targetRef = settingsRef(userId);
+                boolean moved = firestore.runTransaction(transaction -> {
+                    DocumentSnapshot legacy = transaction.get(legacyRef).get();
+                    DocumentSnapshot target = transaction.get(targetRef).get();
+                    if (!legacy.exists()) {
+                        return false;
+                    }
+                    boolean copy = !target.exists();
+                    if (copy) {
+                        transaction.set(targetRef, legacy.getData());
+                    }
+                    transaction.delete(legacyRef);
+                    return copy;
+                }).get();
+
+                if (moved) {
+                    migrated++;
+                } else {
+                    superseded++;
+                }
+                settingsCache.invalidate(userId);
+            }
+
+            if (documents.size() < MIGRATION_PAGE_SIZE) {
+                break;
+            }
+            lastDocument = documents.get(documents.size() - 1);
         }
 
-        return settings;
+        logger.info("Migrated {} settings documents to user id keys, dropped {} superseded ones", migrated, superseded);
+    }
+
+    /**
+     * Settings as written, and the user's data version the write produced.
+     */
+    protected record StoredSettings(UserSettings settings, long version) {
+    }
+
+    static void checkTimeZone(UserSettings settings) {
+        if (settings.getTimeZone() != null && !CheckinZones.isValid(settings.getTimeZone())) {
+            throw new InvalidTimeZoneException("timeZone: unknown time zone " + settings.getTimeZone());
+        }
+    }
+
+    private DocumentReference settingsRef(String userId) {
+        return firestore.collection(COLLECTION_NAME).document(userId);
     }
 
     private UserSettings documentToUserSettings(DocumentSnapshot document) {
@@ -92,6 +199,7 @@ public class SettingsService {
             document.getBoolean("weightEnabled") : true);
         settings.setWaterEnabled(document.contains("waterEnabled") ? 
             document.getBoolean("waterEnabled") : true);
+        settings.setTimeZone(document.getString("timeZone"));
 
         // Handle timestamps
         if (document.contains("createdAt")) {
@@ -118,6 +226,7 @@ public class SettingsService {
         map.put("mealEnabled", settings.isMealEnabled());
         map.put("weightEnabled", settings.isWeightEnabled());
         map.put("waterEnabled", settings.isWaterEnabled());
+        map.put("timeZone", settings.getTimeZone());
 
         if (settings.getCreatedAt() != null) {
             map.put("createdAt", Date.from(settings.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant()));
@@ -0,0 +1,141 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChangesPage;
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a store so every asynchronous call completes a fixed latency plus a random jitter later, like a Firestore
+ * round trip would. Used by the loadtest profile to run the embedded store with production-like timings; the
+ * blocking maintenance calls and listeners are passed through unchanged.
+ */
+public class SimulatedLatencyCheckinStore implements CheckinStore {
+
+    private final CheckinStore delegate;
+    private final long latencyMicros;
+    private final long jitterMicros;
+
+    public SimulatedLatencyCheckinStore(CheckinStore delegate, Duration latency, Duration jitter) {
+        this.delegate = delegate;
+        this.latencyMicros = TimeUnit.NANOSECONDS.toMicros(latency.toNanos());
+        this.jitterMicros = TimeUnit.NANOSECONDS.toMicros(jitter.toNanos());
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getAllEntriesByUserId(String userId, Integer limit, String startAfter) {
+        return delayed(delegate.getAllEntriesByUserId(userId, limit, startAfter));
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type,
+                                                                    Integer limit, String startAfter) {
+        return delayed(delegate.getEntriesByUserIdAndType(userId, type, limit, startAfter));
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate, ZoneId zone,
+                                                                         Integer limit, String startAfter) {
+        return delayed(delegate.getEntriesByUserIdAndDateRange(userId, startDate, endDate, zone, limit, startAfter));
+    }
+
+    @Override
+    public void forEachEntryByUserId(String userId, CheckinEntryConsumer consumer)
+            throws ExecutionException, InterruptedException, IOException {
+        delegate.forEachEntryByUserId(userId, consumer);
+    }
+
+    @Override
+    public CompletableFuture<CheckinChangesPage> getChangesByUserId(String userId, CheckinCursor since, int limit) {
+        return delayed(delegate.getChangesByUserId(userId, since, limit));
+    }
+
+    @Override
+    public CompletableFuture<Optional<CheckinEntry>> getEntryById(String id) {
+        return delayed(delegate.getEntryById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<CheckinEntry>> getEntriesByIds(String userId, List<String> ids) {
+        return delayed(delegate.getEntriesByIds(userId, ids));
+    }
+
+    @Override
+    public CompletableFuture<CheckinEntry> createEntry(CheckinEntry entry) {
+        return delayed(delegate.createEntry(entry));
+    }
+
+    @Override
+    public CompletableFuture<CheckinEntry> updateEntry(String userId, String id, CheckinEntry updatedEntry,
+                                                       Long expectedVersion) {
+        return delayed(delegate.updateEntry(userId, id, updatedEntry, expectedVersion));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteEntry(String userId, String id, Long expectedVersion) {
+        return delayed(delegate.deleteEntry(userId, id, expectedVersion));
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, CheckinBatchResult>> applyBatch(String userId,
+                                                                          Map<Integer, CheckinBatchOperation> operations) {
+        return delayed(delegate.applyBatch(userId, operations));
+    }
+
+    @Override
+    public CompletableFuture<CheckinStats> getStatsByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                        LocalDateTime endDate, ZoneId zone) {
+        return delayed(delegate.getStatsByUserIdAndDateRange(userId, startDate, endDate, zone));
+    }
+
+    @Override
+    public CompletableFuture<List<DailyRollup>> getDailyRollups(String userId, int startDay, int endDay) {
+        return delayed(delegate.getDailyRollups(userId, startDay, endDay));
+    }
+
+    @Override
+    public CompletableFuture<List<CheckinStreak>> getStreaks(String userId, LocalDate today) {
+        return delayed(delegate.getStreaks(userId, today));
+    }
+
+    @Override
+    public Registration listen(String userId, ChangeListener listener) {
+        return delegate.listen(userId, listener);
+    }
+
+    // Failures are delayed too, a failed RPC takes its round trip as well
+    private <T> CompletableFuture<T> delayed(CompletableFuture<T> call) {
+        long delayMicros = latencyMicros + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(jitterMicros + 1) : 0);
+        if (delayMicros == 0) {
+            return call;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        call.whenCompleteAsync((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }, CompletableFuture.delayedExecutor(delayMicros, TimeUnit.MICROSECONDS));
+        return result;
+    }
+}
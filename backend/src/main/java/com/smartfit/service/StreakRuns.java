@@ -0,0 +1,120 @@
+package com.smartfit.service;
+
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The active days of one streak type as disjoint runs of consecutive days.
+ *
+ * A day becoming active extends or joins its neighbouring runs, a day becoming inactive splits its run, so backdated
+ * check-ins and deletions cost one map update instead of a rescan of the history. Current and longest streak are
+ * read off the runs.
+ */
+public class StreakRuns {
+
+    // Start day to end day of each run, both inclusive
+    private final TreeMap<LocalDate, LocalDate> runs = new TreeMap<>();
+
+    public static Map<CheckinStreak.Type, StreakRuns> byType() {
+        Map<CheckinStreak.Type, StreakRuns> runs = new EnumMap<>(CheckinStreak.Type.class);
+        for (CheckinStreak.Type type : CheckinStreak.Type.values()) {
+            runs.put(type, new StreakRuns());
+        }
+        return runs;
+    }
+
+    /**
+     * Number of the day's check-ins that count towards the streak type.
+     */
+    public static long count(DailyRollup rollup, CheckinStreak.Type type) {
+        long count = 0;
+        for (Map.Entry<CheckinEntry.CheckinType, DailyRollup.TypeTotals> totals : rollup.getTotals().entrySet()) {
+            if (CheckinStreak.Type.of(totals.getKey()) == type) {
+                count += totals.getValue().getCount();
+            }
+        }
+        return count;
+    }
+
+    public void activate(LocalDate day) {
+        Map.Entry<LocalDate, LocalDate> before = runs.floorEntry(day);
+        if (before != null && !before.getValue().isBefore(day)) {
+            return;
+        }
+
+        LocalDate start = before != null && before.getValue().plusDays(1).equals(day) ? before.getKey() : day;
+        LocalDate followingEnd = runs.remove(day.plusDays(1));
+        runs.put(start, followingEnd != null ? followingEnd : day);
+    }
+
+    public void deactivate(LocalDate day) {
+        Map.Entry<LocalDate, LocalDate> run = runs.floorEntry(day);
+        if (run == null || run.getValue().isBefore(day)) {
+            return;
+        }
+
+        runs.remove(run.getKey());
+        if (run.getKey().isBefore(day)) {
+            runs.put(run.getKey(), day.minusDays(1));
+        }
+        if (run.getValue().isAfter(day)) {
+            runs.put(day.plusDays(1), run.getValue());
+        }
+    }
+
+    public CheckinStreak toStreak(CheckinStreak.Type type, LocalDate today) {
+        int longest = 0;
+        for (Map.Entry<LocalDate, LocalDate> run : runs.entrySet()) {
+            longest = Math.max(longest, length(run.getKey(), run.getValue()));
+        }
+
+        // Days after today do not count towards the current streak
+        int current = 0;
+        boolean runningOut = false;
+        Map.Entry<LocalDate, LocalDate> run = runs.floorEntry(today);
+        if (run != null && !run.getValue().isBefore(today)) {
+            current = length(run.getKey(), today);
+        } else if (run != null && run.getValue().equals(today.minusDays(1))) {
+            current = length(run.getKey(), run.getValue());
+            runningOut = true;
+        }
+
+        LocalDate lastActiveDay = runs.isEmpty() ? null : runs.lastEntry().getValue();
+        return new CheckinStreak(type, current, longest, lastActiveDay, runningOut);
+    }
+
+    /**
+     * The runs as a flat list of start and end days in yyyyMMdd form, for storage.
+     */
+    public List<Long> toDays() {
+        List<Long> days = new ArrayList<>(runs.size() * 2);
+        for (Map.Entry<LocalDate, LocalDate> run : runs.entrySet()) {
+            days.add((long) DailyRollupService.dayOf(run.getKey().atStartOfDay()));
+            days.add((long) DailyRollupService.dayOf(run.getValue().atStartOfDay()));
+        }
+        return days;
+    }
+
+    public static StreakRuns fromDays(List<?> days) {
+        StreakRuns streakRuns = new StreakRuns();
+        for (int i = 0; i + 1 < days.size(); i += 2) {
+            if (days.get(i) instanceof Number start && days.get(i + 1) instanceof Number end) {
+                streakRuns.runs.put(DailyRollupService.dateOf(start.intValue()), DailyRollupService.dateOf(end.intValue()));
+            }
+        }
+        return streakRuns;
+    }
+
+    private static int length(LocalDate start, LocalDate end) {
+        return (int) ChronoUnit.DAYS.between(start, end) + 1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartfit.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.UpdateBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of each user's data, bumped by every check-in or settings write, and the strong ETags derived from it.
+ *
+ * The version ETags are built from lives in Firestore at {@code userDataVersions/{userId}} and is incremented inside
+ * the transaction of every write, so all instances agree on it and a write can never land without its bump. This
+ * costs a single document read per conditional request. A read must take the ETag before it loads the data: a write
+ * that lands in between then leaves the response with an already outdated ETag, which costs the client one more
+ * full fetch but never hides the change.
+ *
+ * Per-user data cached in process, like {@link SettingsCache}, remembers the version it was loaded at and is
+ * reloaded once {@link #getSharedVersion} reports a newer one.
+ *
+ * {@link #getVersion} is a separate, per-instance count of the writes this instance has seen, for keys that only
+ * have to change with them, like the in-flight reads of {@link ReadCoalescer}.
+ */
+@Service
+@Profile("!embedded")
+public class UserDataVersionService {
+
+    private static final String COLLECTION_NAME = "userDataVersions";
+
+    private final Firestore firestore;
+    private final OperationMetrics metrics;
+    private final Map<String, AtomicLong> localVersions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserDataVersionService(@Lazy Firestore firestore, OperationMetrics metrics) {
+        this.firestore = firestore;
+        this.metrics = metrics;
+    }
+
+    public long getVersion(String userId) {
+        AtomicLong version = localVersions.get(userId);
+        return version != null ? version.get() : 0;
+    }
+
+    /**
+     * Counts a write of this instance, once it has completed, whether it went through or not.
+     */
+    public void bump(String userId) {
+        localVersions.computeIfAbsent(userId, u -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Reads the shared version inside a write's transaction, which must happen before the transaction's writes.
+     * Together with {@link #bump(UpdateBuilder, String)} the write then lands at exactly this version plus one.
+     */
+    public long readVersion(Transaction transaction, String userId) throws ExecutionException, InterruptedException {
+        Long version = transaction.get(versionRef(userId)).get().getLong("version");
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Adds the increment of the shared version to a write's transaction or batch.
+     */
+    public void bump(UpdateBuilder<?> write, String userId) {
+        write.set(versionRef(userId), Map.of("version", FieldValue.increment(1)), SetOptions.merge());
+    }
+
+    /**
+     * Strong ETag of everything derived from the user's current data.
+     */
+    public CompletableFuture<String> etag(String userId) {
+        return getSharedVersion(userId).thenApply(version -> etag(userId, version));
+    }
+
+    /**
+     * Strong ETag of data that also depends on the user's current date, such as a series ending today.
+     */
+    public CompletableFuture<String> etag(String userId, LocalDate today) {
+        return etag(userId).thenApply(etag -> etag.substring(0, etag.length() - 1) + "-" + today.toEpochDay() + "\"");
+    }
+
+    /**
+     * The version all instances agree on, which data cached in process is checked against.
+     */
+    public CompletableFuture<Long> getSharedVersion(String userId) {
+        return metrics.firestore("getDataVersion", () -> versionRef(userId).get()).thenApply(document -> {
+            Long version = document.getLong("version");
+            return version != null ? version : 0L;
+        });
+    }
+
+    protected String etag(String userId, long version) {
+        return "\"" + Integer.toHexString(userId.hashCode()) + "-" + version + "\"";
+    }
+
+    private DocumentReference versionRef(String userId) {
+        return firestore.collection(COLLECTION_NAME).document(userId);
+    }
+}
@@ -0,0 +1,157 @@
+package com.smartfit.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user token buckets, one budget for reads and one for writes, so that a runaway client (a sync loop, a script)
+ * is turned away before it reaches Firestore instead of spending the quota of every other user.
+ *
+ * A bucket is a single atomic "theoretical arrival time" (GCRA, equivalent to a token bucket refilled at the
+ * budget's rate and holding up to its burst), taken with compare-and-set, so admitting a request never locks. Users
+ * are spread over striped maps bounded at max-users; a full stripe first forgets the users whose buckets have
+ * refilled, which loses nothing, and only then active ones, who start over with a full burst.
+ */
+@Component
+public class UserRateLimiter {
+
+    private static final String THROTTLED = "smartfit.ratelimit.throttled";
+
+    private static final int STRIPES = 16;
+
+    private final boolean enabled;
+    private final Budget reads;
+    private final Budget writes;
+    private final int maxUsersPerStripe;
+    private final List<ConcurrentHashMap<String, UserBuckets>> stripes = new ArrayList<>(STRIPES);
+
+    public UserRateLimiter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.reads.per-second:20}") double readsPerSecond,
+                           @Value("${rate-limit.reads.burst:100}") int readBurst,
+                           @Value("${rate-limit.writes.per-second:5}") double writesPerSecond,
+                           @Value("${rate-limit.writes.burst:30}") int writeBurst,
+                           @Value("${rate-limit.max-users:10000}") int maxUsers,
+                           MeterRegistry registry) {
+        this.enabled = enabled;
+        this.reads = new Budget(readsPerSecond, readBurst, throttledCounter(registry, "read"));
+        this.writes = new Budget(writesPerSecond, writeBurst, throttledCounter(registry, "write"));
+        this.maxUsersPerStripe = Math.max(1, maxUsers / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+        }
+        Gauge.builder("smartfit.ratelimit.users", this, UserRateLimiter::size)
+                .description("Users with a rate limit bucket in memory")
+                .register(registry);
+    }
+
+    /**
+     * Takes a token from the user's read or write budget. Returns 0 when the request is admitted, otherwise the
+     * nanoseconds until the next token is available.
+     */
+    public long acquire(String userId, boolean write) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        UserBuckets buckets = bucketsOf(userId, now);
+        Budget budget = write ? writes : reads;
+        long waitNanos = budget.acquire(write ? buckets.writes : buckets.reads, now);
+        if (waitNanos > 0) {
+            budget.throttled.increment();
+        }
+        return waitNanos;
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, UserBuckets> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private UserBuckets bucketsOf(String userId, long now) {
+        // Spread the hash first, user ids that differ only in their last characters still land apart
+        int hash = userId.hashCode();
+        ConcurrentHashMap<String, UserBuckets> stripe = stripes.get(Math.floorMod(hash ^ (hash >>> 16), STRIPES));
+
+        UserBuckets buckets = stripe.get(userId);
+        if (buckets != null) {
+            return buckets;
+        }
+        if (stripe.size() >= maxUsersPerStripe) {
+            evict(stripe, now);
+        }
+        return stripe.computeIfAbsent(userId, id -> new UserBuckets(now));
+    }
+
+    private void evict(ConcurrentHashMap<String, UserBuckets> stripe, long now) {
+        stripe.values().removeIf(buckets -> buckets.isFull(now));
+        Iterator<String> userIds = stripe.keySet().iterator();
+        while (stripe.size() >= maxUsersPerStripe && userIds.hasNext()) {
+            userIds.next();
+            userIds.remove();
+        }
+    }
+
+    private static Counter throttledCounter(MeterRegistry registry, String budget) {
+        return Counter.builder(THROTTLED)
+                .description("Requests turned away with 429 by the per-user rate limit")
+                .tag("budget", budget)
+                .register(registry);
+    }
+
+    private static final class Budget {
+
+        // Time one token takes to refill, and how far ahead of now a full burst may book
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final Counter throttled;
+
+        Budget(double perSecond, int burst, Counter throttled) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+            this.throttled = throttled;
+        }
+
+        long acquire(AtomicLong theoreticalArrival, long now) {
+            while (true) {
+                long current = theoreticalArrival.get();
+                // Subtraction keeps the comparison right across System.nanoTime() wrap-around
+                long next = (current - now > 0 ? current : now) + intervalNanos;
+                long waitNanos = next - now - toleranceNanos;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private static final class UserBuckets {
+
+        final AtomicLong reads;
+        final AtomicLong writes;
+
+        UserBuckets(long now) {
+            this.reads = new AtomicLong(now);
+            this.writes = new AtomicLong(now);
+        }
+
+        boolean isFull(long now) {
+            return reads.get() - now <= 0 && writes.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.smartfit.service.embedded;
+
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.service.DailyRollupService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary form of the records in the embedded segment log.
+ *
+ * A PUT record holds a whole {@link CheckinEntry}, a DELETE record the id and owner of the removed entry, and a
+ * BATCH record several PUT and DELETE records that are replayed all or none.
+ * Nullable values are prefixed with a presence flag; date-times are stored zone-free as UTC wall clock. Fields added
+ * later are appended, and read only when the record has them.
+ */
+final class CheckinRecordCodec {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte BATCH = 3;
+
+    private static final CheckinEntry.CheckinType[] TYPES = CheckinEntry.CheckinType.values();
+
+    private CheckinRecordCodec() {
+    }
+
+    static byte[] encodePut(CheckinEntry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, entry.getId());
+            writeString(out, entry.getUserId());
+            out.writeByte(entry.getType().ordinal());
+            writeString(out, entry.getTitle());
+            writeString(out, entry.getDescription());
+            writeInteger(out, entry.getCalories());
+            writeInteger(out, entry.getDuration());
+            writeInteger(out, entry.getWater());
+            if (entry.getWeight() != null) {
+                out.writeBoolean(true);
+                out.writeDouble(entry.getWeight());
+            } else {
+                out.writeBoolean(false);
+            }
+            writeDateTime(out, entry.getTimestamp());
+            writeDateTime(out, entry.getCreatedAt());
+            writeDateTime(out, entry.getUpdatedAt());
+            writeString(out, entry.getTimeZone());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static CheckinEntry decodePut(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            CheckinEntry entry = new CheckinEntry();
+            entry.setId(readString(in));
+            entry.setUserId(readString(in));
+            entry.setType(TYPES[in.readByte()]);
+            entry.setTitle(readString(in));
+            entry.setDescription(readString(in));
+            entry.setCalories(readInteger(in));
+            entry.setDuration(readInteger(in));
+            entry.setWater(readInteger(in));
+            entry.setWeight(in.readBoolean() ? in.readDouble() : null);
+            entry.setTimestamp(readDateTime(in));
+            entry.setCreatedAt(readDateTime(in));
+            entry.setUpdatedAt(readDateTime(in));
+            // Records written before zones were stored end here, their timestamps are in the server's zone
+            if (in.available() > 0) {
+                entry.setTimeZone(readString(in));
+            }
+            if (entry.getTimestamp() != null) {
+                entry.setDayKey(DailyRollupService.dayOf(entry.getTimestamp()));
+            }
+            return entry;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static byte[] encodeDelete(String id, String userId, LocalDateTime deletedAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, id);
+            writeString(out, userId);
+            writeDateTime(out, deletedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static DeleteRecord decodeDelete(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new DeleteRecord(readString(in), readString(in), readDateTime(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record DeleteRecord(String id, String userId, LocalDateTime deletedAt) {
+    }
+
+    static byte[] encodeBatch(List<BatchRecord> records) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(records.size());
+            for (BatchRecord record : records) {
+                out.writeByte(record.kind());
+                out.writeInt(record.payload().length);
+                out.write(record.payload());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Visits the records of a batch in order, each with the offset of its payload within the batch payload.
+     */
+    static void forEachInBatch(byte[] payload, BatchVisitor visitor) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte kind = buffer.get();
+            int length = buffer.getInt();
+            int offset = buffer.position();
+            visitor.visit(kind, Arrays.copyOfRange(payload, offset, offset + length), offset);
+            buffer.position(offset + length);
+        }
+    }
+
+    record BatchRecord(byte kind, byte[] payload) {
+    }
+
+    @FunctionalInterface
+    interface BatchVisitor {
+        void visit(byte kind, byte[] payload, int offset);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,691 @@
+package com.smartfit.service.embedded;
+
+import com.google.cloud.Timestamp;
+import com.smartfit.exception.EntryNotFoundException;
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinChange;
+import com.smartfit.model.CheckinChangesPage;
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.CheckinPage;
+import com.smartfit.model.CheckinStats;
+import com.smartfit.model.CheckinStreak;
+import com.smartfit.model.DailyRollup;
+import com.smartfit.service.CheckinCursor;
+import com.smartfit.service.CheckinStatsEngine;
+import com.smartfit.service.CheckinStore;
+import com.smartfit.service.CheckinVersions;
+import com.smartfit.service.CheckinZones;
+import com.smartfit.service.DailyRollupService;
+import com.smartfit.service.StreakRuns;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Check-in store backed by a local, memory-mapped {@link SegmentLog} instead of Firestore.
+ *
+ * Every write appends a record to the log; an in-memory index maps ids and per-user (timestamp, id) keys to the
+ * record locations, so reads decode entries straight from the mapped segments. A second per-user index orders
+ * entries by update time for change listings, next to the tombstones replayed from the delete records. The index
+ * is rebuilt by replaying the log on startup. Once more than half of the log is dead records, the live ones and
+ * the unexpired tombstones are copied into a new generation of segments and the old files are dropped. Daily
+ * rollups are derived from the index on demand.
+ * Everything runs on the calling thread, so the returned futures are already complete.
+ */
+@Service
+@Profile("embedded")
+public class EmbeddedCheckinStore implements CheckinStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedCheckinStore.class);
+    private static final String ID_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int ID_LENGTH = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int RECORD_OVERHEAD = 9;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final Duration tombstoneRetention;
+    private final SecureRandom random = new SecureRandom();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, IndexedEntry> byId = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentSkipListMap<EntryKey, IndexedEntry>> byUser = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentSkipListMap<ChangeKey, IndexedEntry>> changesByUser = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentSkipListMap<ChangeKey, CheckinRecordCodec.DeleteRecord>> tombstonesByUser =
+            new ConcurrentHashMap<>();
+    private final Map<String, List<ChangeListener>> listeners = new ConcurrentHashMap<>();
+
+    private SegmentLog log;
+    private long liveBytes;
+
+    public EmbeddedCheckinStore(@Value("${checkin.embedded.directory:data/checkins}") String directory,
+                                @Value("${checkin.embedded.segment-size:64MB}") DataSize segmentSize,
+                                @Value("${checkin.embedded.sync-writes:true}") boolean syncWrites,
+                                @Value("${checkin.changes.tombstone-retention:30d}") Duration tombstoneRetention) {
+        this.directory = Path.of(directory);
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.syncWrites = syncWrites;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        log = new SegmentLog(directory, segmentSize, syncWrites);
+        log.open(this::replay);
+        logger.info("Opened embedded check-in store in {} with {} entries", directory.toAbsolutePath(), byId.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            log.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getAllEntriesByUserId(String userId, Integer limit, String startAfter) {
+        return CompletableFuture.completedFuture(getPage(userId, null, null, null, limit, startAfter));
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndType(String userId, CheckinEntry.CheckinType type,
+                                                                    Integer limit, String startAfter) {
+        return CompletableFuture.completedFuture(getPage(userId, null, null, type, limit, startAfter));
+    }
+
+    @Override
+    public CompletableFuture<CheckinPage> getEntriesByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                         LocalDateTime endDate, ZoneId zone,
+                                                                         Integer limit, String startAfter) {
+        return CompletableFuture.completedFuture(getPage(userId, EntryKey.upperBound(endDate, zone),
+                EntryKey.of(startDate, zone, ""), null, limit, startAfter));
+    }
+
+    @Override
+    public void forEachEntryByUserId(String userId, CheckinEntryConsumer consumer) throws IOException {
+        for (IndexedEntry entry : entriesOf(userId).values()) {
+            consumer.accept(read(entry));
+        }
+    }
+
+    @Override
+    public CompletableFuture<CheckinChangesPage> getChangesByUserId(String userId, CheckinCursor since, int limit) {
+        NavigableMap<ChangeKey, IndexedEntry> entries = changesOf(userId);
+        NavigableMap<ChangeKey, CheckinRecordCodec.DeleteRecord> tombstones = Collections.emptyNavigableMap();
+        if (since != null) {
+            ChangeKey after = ChangeKey.of(since);
+            entries = entries.tailMap(after, false);
+            tombstones = tombstonesOf(userId).tailMap(after, false);
+        }
+
+        Iterator<Map.Entry<ChangeKey, IndexedEntry>> entryIterator = entries.entrySet().iterator();
+        Iterator<ChangeKey> tombstoneIterator = tombstones.keySet().iterator();
+        Map.Entry<ChangeKey, IndexedEntry> nextEntry = entryIterator.hasNext() ? entryIterator.next() : null;
+        ChangeKey nextTombstone = tombstoneIterator.hasNext() ? tombstoneIterator.next() : null;
+
+        List<CheckinChange> changes = new ArrayList<>();
+        ChangeKey last = null;
+        while (changes.size() < limit && (nextEntry != null || nextTombstone != null)) {
+            if (nextTombstone == null || (nextEntry != null && nextEntry.getKey().compareTo(nextTombstone) < 0)) {
+                changes.add(new CheckinChange(CheckinChange.Type.MODIFIED, nextEntry.getValue().id(),
+                        read(nextEntry.getValue())));
+                last = nextEntry.getKey();
+                nextEntry = entryIterator.hasNext() ? entryIterator.next() : null;
+            } else {
+                changes.add(new CheckinChange(CheckinChange.Type.REMOVED, nextTombstone.id(), null));
+                last = nextTombstone;
+                nextTombstone = tombstoneIterator.hasNext() ? tombstoneIterator.next() : null;
+            }
+        }
+
+        boolean hasMore = nextEntry != null || nextTombstone != null;
+        String cursor = last != null
+                ? new CheckinCursor(Timestamp.ofTimeSecondsAndNanos(last.epochSecond(), last.nano()), last.id()).encode()
+                : null;
+        return CompletableFuture.completedFuture(new CheckinChangesPage(changes, cursor, hasMore));
+    }
+
+    @Override
+    public CompletableFuture<Optional<CheckinEntry>> getEntryById(String id) {
+        IndexedEntry entry = byId.get(id);
+        return CompletableFuture.completedFuture(entry != null ? Optional.of(read(entry)) : Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<List<CheckinEntry>> getEntriesByIds(String userId, List<String> ids) {
+        List<CheckinEntry> entries = new ArrayList<>();
+        for (String id : ids) {
+            IndexedEntry entry = byId.get(id);
+            if (entry != null && entry.userId().equals(userId)) {
+                entries.add(read(entry));
+            }
+        }
+        return CompletableFuture.completedFuture(entries);
+    }
+
+    @Override
+    public CompletableFuture<CheckinEntry> createEntry(CheckinEntry entry) {
+        writeLock.lock();
+        try {
+            entry.setId(newId());
+            entry.setCreatedAt(LocalDateTime.now());
+            entry.setUpdatedAt(LocalDateTime.now());
+            put(entry);
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(entry);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<CheckinEntry> updateEntry(String userId, String id, CheckinEntry updatedEntry,
+                                                       Long expectedVersion) {
+        writeLock.lock();
+        try {
+            IndexedEntry existing = byId.get(id);
+            if (existing == null || !existing.userId().equals(userId)) {
+                return CompletableFuture.failedFuture(new EntryNotFoundException("Entry not found with id: " + id));
+            }
+            CheckinEntry current = read(existing);
+            CheckinVersions.check(current, expectedVersion);
+
+            updatedEntry.setId(id);
+            updatedEntry.setUserId(userId);
+            updatedEntry.setCreatedAt(current.getCreatedAt());
+            updatedEntry.setUpdatedAt(LocalDateTime.now());
+            put(updatedEntry);
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(updatedEntry);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteEntry(String userId, String id, Long expectedVersion) {
+        writeLock.lock();
+        try {
+            IndexedEntry existing = byId.get(id);
+            if (existing == null || !existing.userId().equals(userId)) {
+                return CompletableFuture.failedFuture(new EntryNotFoundException("Entry not found with id: " + id));
+            }
+            CheckinVersions.check(read(existing), expectedVersion);
+
+            delete(existing);
+            compactIfNeeded();
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Checks every operation under the write lock first, then appends the accepted ones as one BATCH record and only
+     * indexes them once it is written: a failed write or a crash leaves none of them applied. Operations on entries
+     * that do not exist, belong to another user or were deleted earlier in the batch are reported as 404 and skipped.
+     */
+    @Override
+    public CompletableFuture<Map<Integer, CheckinBatchResult>> applyBatch(String userId,
+                                                                          Map<Integer, CheckinBatchOperation> operations) {
+        writeLock.lock();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Map<Integer, CheckinBatchResult> results = new TreeMap<>();
+            List<CheckinRecordCodec.BatchRecord> records = new ArrayList<>();
+            List<CheckinChange> changes = new ArrayList<>();
+            Set<String> createdIds = new HashSet<>();
+            Set<String> deletedIds = new HashSet<>();
+
+            for (Map.Entry<Integer, CheckinBatchOperation> operation : operations.entrySet()) {
+                int index = operation.getKey();
+                CheckinBatchOperation op = operation.getValue();
+
+                if (op.getOp() == CheckinBatchOperation.Type.CREATE) {
+                    CheckinEntry entry = op.getEntry();
+                    String id;
+                    do {
+                        id = newId();
+                    } while (!createdIds.add(id));
+                    entry.setId(id);
+                    entry.setUserId(userId);
+                    entry.setCreatedAt(now);
+                    entry.setUpdatedAt(now);
+                    records.add(new CheckinRecordCodec.BatchRecord(CheckinRecordCodec.PUT,
+                            CheckinRecordCodec.encodePut(entry)));
+                    changes.add(new CheckinChange(CheckinChange.Type.ADDED, id, entry));
+                    CheckinBatchResult result = new CheckinBatchResult(index, op.getOp(), id, 201);
+                    result.setEntry(entry);
+                    results.put(index, result);
+                    continue;
+                }
+
+                IndexedEntry existing = deletedIds.contains(op.getId()) ? null : byId.get(op.getId());
+                if (existing == null || !existing.userId().equals(userId)) {
+                    results.put(index, CheckinBatchResult.failed(index, op, 404, List.of("Entry not found")));
+                    continue;
+                }
+
+                if (op.getOp() == CheckinBatchOperation.Type.UPDATE) {
+                    CheckinEntry entry = op.getEntry();
+                    entry.setId(op.getId());
+                    entry.setUserId(userId);
+                    entry.setCreatedAt(read(existing).getCreatedAt());
+                    entry.setUpdatedAt(now);
+                    records.add(new CheckinRecordCodec.BatchRecord(CheckinRecordCodec.PUT,
+                            CheckinRecordCodec.encodePut(entry)));
+                    changes.add(new CheckinChange(CheckinChange.Type.MODIFIED, entry.getId(), entry));
+                    CheckinBatchResult result = new CheckinBatchResult(index, op.getOp(), op.getId(), 200);
+                    result.setEntry(entry);
+                    results.put(index, result);
+                } else {
+                    deletedIds.add(existing.id());
+                    records.add(new CheckinRecordCodec.BatchRecord(CheckinRecordCodec.DELETE,
+                            CheckinRecordCodec.encodeDelete(existing.id(), existing.userId(), now)));
+                    changes.add(new CheckinChange(CheckinChange.Type.REMOVED, existing.id(), null));
+                    results.put(index, new CheckinBatchResult(index, op.getOp(), op.getId(), 204));
+                }
+            }
+
+            if (records.isEmpty()) {
+                return CompletableFuture.completedFuture(results);
+            }
+
+            byte[] payload = CheckinRecordCodec.encodeBatch(records);
+            replay(CheckinRecordCodec.BATCH, payload, log.append(CheckinRecordCodec.BATCH, payload));
+            for (CheckinChange change : changes) {
+                notifyListeners(userId, change);
+            }
+            compactAfterBatch();
+            return CompletableFuture.completedFuture(results);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The batch is durable by now, so a failed compaction must not report it as failed
+    private void compactAfterBatch() {
+        try {
+            compactIfNeeded();
+        } catch (IOException e) {
+            logger.warn("Compaction after a batch failed, retried on the next write", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<CheckinStats> getStatsByUserIdAndDateRange(String userId, LocalDateTime startDate,
+                                                                        LocalDateTime endDate, ZoneId zone) {
+        CheckinStatsEngine engine = new CheckinStatsEngine();
+        for (IndexedEntry indexed : indexedBetween(userId, startDate, endDate, zone)) {
+            CheckinEntry entry = read(indexed);
+            Date timestamp = entry.getTimestamp() != null ? Date.from(CheckinZones.instantOf(entry)) : null;
+            engine.add(entry.getType(), toLong(entry.getCalories()), toLong(entry.getDuration()),
+                    toLong(entry.getWater()), entry.getWeight(), timestamp);
+        }
+        return CompletableFuture.completedFuture(engine.toStats());
+    }
+
+    @Override
+    public CompletableFuture<List<DailyRollup>> getDailyRollups(String userId, int startDay, int endDay) {
+        // Entries of any zone whose dayKey is in range lie within a day of it in UTC
+        LocalDateTime startDate = DailyRollupService.dateOf(startDay).minusDays(1).atStartOfDay();
+        LocalDateTime endDate = DailyRollupService.dateOf(endDay).plusDays(2).atStartOfDay().minusNanos(1);
+
+        Map<Integer, DailyRollup> rollups = new TreeMap<>();
+        for (IndexedEntry indexed : indexedBetween(userId, startDate, endDate, ZoneOffset.UTC)) {
+            if (indexed.day() < startDay || indexed.day() > endDay) {
+                continue;
+            }
+            CheckinEntry entry = read(indexed);
+            int day = indexed.day();
+            DailyRollup rollup = rollups.computeIfAbsent(day, d -> new DailyRollup(userId, d));
+
+            DailyRollup.TypeTotals totals = rollup.getOrCreateTotals(entry.getType());
+            totals.setCount(totals.getCount() + 1);
+            totals.setCalories(totals.getCalories() + valueOrZero(entry.getCalories()));
+            totals.setDuration(totals.getDuration() + valueOrZero(entry.getDuration()));
+            totals.setWater(totals.getWater() + valueOrZero(entry.getWater()));
+            if (entry.getWeight() != null) {
+                totals.setWeight(totals.getWeight() + entry.getWeight());
+                // Entries come newest first, so the first weight of a day is its last one
+                if (entry.getType() == CheckinEntry.CheckinType.WEIGHT && rollup.getLastWeightAt() == null) {
+                    rollup.setLastWeight(entry.getWeight());
+                    rollup.setLastWeightAt(entry.getTimestamp());
+                    rollup.setLastWeightEntryId(entry.getId());
+                }
+            }
+        }
+        return CompletableFuture.completedFuture(new ArrayList<>(rollups.values()));
+    }
+
+    /**
+     * Like the rollups, streaks are derived from the index on every read; no entry has to be read from the log.
+     */
+    @Override
+    public CompletableFuture<List<CheckinStreak>> getStreaks(String userId, LocalDate today) {
+        Map<CheckinStreak.Type, StreakRuns> runs = StreakRuns.byType();
+        for (IndexedEntry entry : entriesOf(userId).values()) {
+            CheckinStreak.Type type = CheckinStreak.Type.of(entry.type());
+            if (type != null) {
+                runs.get(type).activate(DailyRollupService.dateOf(entry.day()));
+            }
+        }
+
+        List<CheckinStreak> streaks = new ArrayList<>();
+        runs.forEach((type, typeRuns) -> streaks.add(typeRuns.toStreak(type, today)));
+        return CompletableFuture.completedFuture(streaks);
+    }
+
+    /**
+     * Listeners are called under the write lock, right after each change is in the log, so they see changes in
+     * commit order and must not block.
+     */
+    @Override
+    public Registration listen(String userId, ChangeListener listener) {
+        listeners.computeIfAbsent(userId, u -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> listeners.computeIfPresent(userId, (u, userListeners) -> {
+            userListeners.remove(listener);
+            return userListeners.isEmpty() ? null : userListeners;
+        });
+    }
+
+    /**
+     * Walks the user's entries newest first from the later of the range end and the cursor, down to the range start.
+     * Null bounds and type leave that side unrestricted.
+     */
+    private CheckinPage getPage(String userId, EntryKey upper, EntryKey lower, CheckinEntry.CheckinType type,
+                                Integer limit, String startAfter) {
+        NavigableMap<EntryKey, IndexedEntry> entries = entriesOf(userId);
+        if (startAfter != null && !startAfter.isEmpty()) {
+            CheckinCursor cursor = CheckinCursor.decode(startAfter);
+            EntryKey after = new EntryKey(cursor.timestamp().getSeconds(), cursor.timestamp().getNanos(), cursor.documentId());
+            entries = upper != null && upper.compareTo(after) > 0 ? entries.tailMap(upper, true) : entries.tailMap(after, false);
+        } else if (upper != null) {
+            entries = entries.tailMap(upper, true);
+        }
+        if (lower != null) {
+            entries = entries.headMap(lower, true);
+        }
+
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : Integer.MAX_VALUE;
+        List<CheckinEntry> page = new ArrayList<>();
+        EntryKey last = null;
+        boolean hasMore = false;
+
+        for (IndexedEntry entry : entries.values()) {
+            if (type != null && entry.type() != type) {
+                continue;
+            }
+            if (page.size() == pageSize) {
+                hasMore = true;
+                break;
+            }
+            page.add(read(entry));
+            last = entry.key();
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            nextCursor = new CheckinCursor(Timestamp.ofTimeSecondsAndNanos(last.epochSecond(), last.nano()), last.id()).encode();
+        }
+        return new CheckinPage(page, nextCursor);
+    }
+
+    private Collection<IndexedEntry> indexedBetween(String userId, LocalDateTime startDate, LocalDateTime endDate,
+                                                    ZoneId zone) {
+        return entriesOf(userId)
+                .subMap(EntryKey.upperBound(endDate, zone), true, EntryKey.of(startDate, zone, ""), true).values();
+    }
+
+    private NavigableMap<EntryKey, IndexedEntry> entriesOf(String userId) {
+        NavigableMap<EntryKey, IndexedEntry> entries = byUser.get(userId);
+        return entries != null ? entries : Collections.emptyNavigableMap();
+    }
+
+    private NavigableMap<ChangeKey, IndexedEntry> changesOf(String userId) {
+        NavigableMap<ChangeKey, IndexedEntry> changes = changesByUser.get(userId);
+        return changes != null ? changes : Collections.emptyNavigableMap();
+    }
+
+    private NavigableMap<ChangeKey, CheckinRecordCodec.DeleteRecord> tombstonesOf(String userId) {
+        NavigableMap<ChangeKey, CheckinRecordCodec.DeleteRecord> tombstones = tombstonesByUser.get(userId);
+        return tombstones != null ? tombstones : Collections.emptyNavigableMap();
+    }
+
+    // Indexes a record as written, on startup and after a batch
+    private void replay(byte kind, byte[] payload, SegmentLog.Location location) {
+        if (kind == CheckinRecordCodec.PUT) {
+            index(CheckinRecordCodec.decodePut(payload), location);
+        } else if (kind == CheckinRecordCodec.DELETE) {
+            CheckinRecordCodec.DeleteRecord deleted = CheckinRecordCodec.decodeDelete(payload);
+            unindex(deleted.id());
+            addTombstone(deleted, location);
+        } else if (kind == CheckinRecordCodec.BATCH) {
+            CheckinRecordCodec.forEachInBatch(payload,
+                    (recordKind, recordPayload, offset) -> replay(recordKind, recordPayload,
+                            location.slice(offset, recordPayload.length)));
+        }
+    }
+
+    private CheckinEntry read(IndexedEntry entry) {
+        return CheckinRecordCodec.decodePut(log.read(entry.location()));
+    }
+
+    private void put(CheckinEntry entry) throws IOException {
+        boolean existed = byId.containsKey(entry.getId());
+        SegmentLog.Location location = log.append(CheckinRecordCodec.PUT, CheckinRecordCodec.encodePut(entry));
+        index(entry, location);
+        notifyListeners(entry.getUserId(),
+                new CheckinChange(existed ? CheckinChange.Type.MODIFIED : CheckinChange.Type.ADDED, entry.getId(), entry));
+    }
+
+    private void delete(IndexedEntry existing) throws IOException {
+        CheckinRecordCodec.DeleteRecord deleted =
+                new CheckinRecordCodec.DeleteRecord(existing.id(), existing.userId(), LocalDateTime.now());
+        SegmentLog.Location location = log.append(CheckinRecordCodec.DELETE,
+                CheckinRecordCodec.encodeDelete(deleted.id(), deleted.userId(), deleted.deletedAt()));
+        unindex(existing.id());
+        addTombstone(deleted, location);
+        notifyListeners(existing.userId(), new CheckinChange(CheckinChange.Type.REMOVED, existing.id(), null));
+    }
+
+    private void notifyListeners(String userId, CheckinChange change) {
+        List<ChangeListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            for (ChangeListener listener : userListeners) {
+                listener.onChanges(List.of(change));
+            }
+        }
+    }
+
+    private void index(CheckinEntry entry, SegmentLog.Location location) {
+        unindex(entry.getId());
+
+        int day = entry.getDayKey() != null ? entry.getDayKey() : DailyRollupService.dayOf(entry.getTimestamp());
+        IndexedEntry indexed = new IndexedEntry(entry.getId(), entry.getUserId(), entry.getType(), day,
+                EntryKey.of(entry), ChangeKey.of(entry.getUpdatedAt(), entry.getId()), location);
+        byId.put(indexed.id(), indexed);
+        byUser.computeIfAbsent(indexed.userId(), u -> new ConcurrentSkipListMap<>()).put(indexed.key(), indexed);
+        changesByUser.computeIfAbsent(indexed.userId(), u -> new ConcurrentSkipListMap<>())
+                .put(indexed.changeKey(), indexed);
+        liveBytes += RECORD_OVERHEAD + location.length();
+    }
+
+    private void unindex(String id) {
+        IndexedEntry previous = byId.remove(id);
+        if (previous != null) {
+            ConcurrentSkipListMap<EntryKey, IndexedEntry> entries = byUser.get(previous.userId());
+            if (entries != null) {
+                entries.remove(previous.key());
+            }
+            ConcurrentSkipListMap<ChangeKey, IndexedEntry> changes = changesByUser.get(previous.userId());
+            if (changes != null) {
+                changes.remove(previous.changeKey());
+            }
+            liveBytes -= RECORD_OVERHEAD + previous.location().length();
+        }
+    }
+
+    // Tombstones count as live records until they expire
+    private void addTombstone(CheckinRecordCodec.DeleteRecord deleted, SegmentLog.Location location) {
+        if (tombstonesByUser.computeIfAbsent(deleted.userId(), u -> new ConcurrentSkipListMap<>())
+                .put(ChangeKey.of(deleted.deletedAt(), deleted.id()), deleted) == null) {
+            liveBytes += RECORD_OVERHEAD + location.length();
+        }
+    }
+
+    /**
+     * Copies the live records into a fresh generation of segments once dead records take up more than half of the
+     * log. Tombstones past the retention are left behind, the others are rewritten after the entries. The old
+     * segments are only dropped after the copy, oldest first; replaying whatever survives a crash in between still
+     * ends in the same index, since the newer generation always wins.
+     */
+    private void compactIfNeeded() throws IOException {
+        long size = log.size();
+        if (size < segmentSize / 2 || size - liveBytes <= liveBytes) {
+            return;
+        }
+
+        List<SegmentLog.Segment> previous = log.startNewGeneration();
+        for (IndexedEntry entry : new ArrayList<>(byId.values())) {
+            byte[] payload = log.read(entry.location());
+            index(CheckinRecordCodec.decodePut(payload), log.append(CheckinRecordCodec.PUT, payload));
+        }
+        LocalDateTime expired = LocalDateTime.now().minus(tombstoneRetention);
+        for (ConcurrentSkipListMap<ChangeKey, CheckinRecordCodec.DeleteRecord> tombstones : tombstonesByUser.values()) {
+            NavigableMap<ChangeKey, CheckinRecordCodec.DeleteRecord> expiredTombstones =
+                    tombstones.headMap(ChangeKey.of(expired, ""));
+            for (CheckinRecordCodec.DeleteRecord deleted : expiredTombstones.values()) {
+                liveBytes -= RECORD_OVERHEAD
+                        + CheckinRecordCodec.encodeDelete(deleted.id(), deleted.userId(), deleted.deletedAt()).length;
+            }
+            expiredTombstones.clear();
+            for (CheckinRecordCodec.DeleteRecord deleted : tombstones.values()) {
+                log.append(CheckinRecordCodec.DELETE,
+                        CheckinRecordCodec.encodeDelete(deleted.id(), deleted.userId(), deleted.deletedAt()));
+            }
+        }
+        tombstonesByUser.values().removeIf(Map::isEmpty);
+        log.dropSegments(previous);
+        logger.info("Compacted embedded check-in store from {} to {} bytes", size, log.size());
+    }
+
+    private String newId() {
+        StringBuilder id = new StringBuilder(ID_LENGTH);
+        do {
+            id.setLength(0);
+            for (int i = 0; i < ID_LENGTH; i++) {
+                id.append(ID_ALPHABET.charAt(random.nextInt(ID_ALPHABET.length())));
+            }
+        } while (byId.containsKey(id.toString()));
+        return id.toString();
+    }
+
+    private static Long toLong(Integer value) {
+        return value != null ? value.longValue() : null;
+    }
+
+    private static long valueOrZero(Integer value) {
+        return value != null ? value : 0L;
+    }
+
+    private record IndexedEntry(String id, String userId, CheckinEntry.CheckinType type, int day, EntryKey key,
+                                ChangeKey changeKey, SegmentLog.Location location) {
+    }
+
+    /**
+     * Orders a user's entries newest first, ties broken by descending id, the same order as the Firestore listings.
+     */
+    private record EntryKey(long epochSecond, int nano, String id) implements Comparable<EntryKey> {
+
+        // Greater than every real id, so in descending order it comes before all entries at that instant
+        private static final String MAX_ID = "\uffff";
+
+        static EntryKey of(CheckinEntry entry) {
+            Instant instant = entry.getTimestamp() != null ? CheckinZones.instantOf(entry) : Instant.EPOCH;
+            return new EntryKey(instant.getEpochSecond(), instant.getNano(), entry.getId());
+        }
+
+        static EntryKey of(LocalDateTime timestamp, ZoneId zone, String id) {
+            Instant instant = timestamp.atZone(zone).toInstant();
+            return new EntryKey(instant.getEpochSecond(), instant.getNano(), id);
+        }
+
+        static EntryKey upperBound(LocalDateTime timestamp, ZoneId zone) {
+            return of(timestamp, zone, MAX_ID);
+        }
+
+        @Override
+        public int compareTo(EntryKey other) {
+            int result = Long.compare(other.epochSecond, epochSecond);
+            if (result == 0) {
+                result = Integer.compare(other.nano, nano);
+            }
+            if (result == 0) {
+                result = other.id.compareTo(id);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Orders a user's changes oldest first, ties broken by ascending id, the same order as the Firestore change
+     * listings.
+     */
+    private record ChangeKey(long epochSecond, int nano, String id) implements Comparable<ChangeKey> {
+
+        static ChangeKey of(LocalDateTime time, String id) {
+            Instant instant = time != null ? time.atZone(ZoneId.systemDefault()).toInstant() : Instant.EPOCH;
+            return new ChangeKey(instant.getEpochSecond(), instant.getNano(), id);
+        }
+
+        static ChangeKey of(CheckinCursor cursor) {
+            return new ChangeKey(cursor.timestamp().getSeconds(), cursor.timestamp().getNanos(), cursor.documentId());
+        }
+
+        @Override
+        public int compareTo(ChangeKey other) {
+            int result = Long.compare(epochSecond, other.epochSecond);
+            if (result == 0) {
+                result = Integer.compare(nano, other.nano);
+            }
+            if (result == 0) {
+                result = id.compareTo(other.id);
+            }
+            return result;
+        }
+    }
+}
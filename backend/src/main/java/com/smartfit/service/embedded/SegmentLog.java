@@ -0,0 +1,214 @@
+package com.smartfit.service.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records spread over fixed-size, memory-mapped segment files.
+ *
+ * Each record is laid out as {@code [int length][int crc32][byte kind][payload]}. The checksum covers kind and
+ * payload, so a record torn by a crash is detected on recovery and the log is truncated right before it.
+ * Appends must be serialized by the caller; reads may happen concurrently from any thread, since a record is never
+ * modified once written and its segment stays mapped as long as a {@link Location} refers to it.
+ */
+final class SegmentLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.log");
+    private static final int HEADER_SIZE = 9;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final List<Segment> segments = new ArrayList<>();
+
+    SegmentLog(Path directory, int segmentSize, boolean syncWrites) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Maps all existing segments and replays their valid records in write order.
+     */
+    void open(RecordVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+
+        List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(Integer::compare);
+
+        for (int number : numbers) {
+            Segment segment = map(number);
+            segments.add(segment);
+            recover(segment, visitor);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(map(1));
+        }
+    }
+
+    Location append(byte kind, byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IOException("Record of " + recordSize + " bytes does not fit into a segment");
+        }
+
+        Segment segment = activeSegment();
+        if (segment.writePosition + recordSize > segmentSize) {
+            segment = map(segment.number + 1);
+            segments.add(segment);
+        }
+
+        int offset = segment.writePosition;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(offset + HEADER_SIZE - 1, kind);
+        buffer.put(offset + HEADER_SIZE, payload);
+        buffer.putInt(offset + 4, checksum(kind, payload));
+        // The length goes in last, a record without it reads as the end of the log
+        buffer.putInt(offset, payload.length);
+        if (syncWrites) {
+            buffer.force(offset, recordSize);
+        }
+
+        segment.writePosition += recordSize;
+        return new Location(segment, offset, payload.length);
+    }
+
+    byte[] read(Location location) {
+        byte[] payload = new byte[location.length()];
+        location.segment().buffer.get(location.offset() + HEADER_SIZE, payload);
+        return payload;
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.writePosition;
+        }
+        return size;
+    }
+
+    /**
+     * Starts a new generation of segments for compaction. Records appended from now on go to fresh segment files;
+     * the returned old segments are deleted with {@link #dropSegments} once their live records have been copied.
+     */
+    List<Segment> startNewGeneration() throws IOException {
+        List<Segment> previous = new ArrayList<>(segments);
+        segments.clear();
+        segments.add(map(previous.get(previous.size() - 1).number + 1));
+        return previous;
+    }
+
+    void dropSegments(List<Segment> dropped) throws IOException {
+        for (Segment segment : dropped) {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private Segment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment map(int number) throws IOException {
+        Path path = directory.resolve(String.format("segment-%08d.log", number));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return new Segment(number, path, channel, buffer);
+    }
+
+    private void recover(Segment segment, RecordVisitor visitor) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+
+            byte kind = buffer.get(position + HEADER_SIZE - 1);
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (buffer.getInt(position + 4) != checksum(kind, payload)) {
+                logger.warn("Truncating {} at offset {}: checksum mismatch", segment.path, position);
+                break;
+            }
+
+            visitor.visit(kind, payload, new Location(segment, position, length));
+            position += HEADER_SIZE + length;
+        }
+
+        // Zero whatever follows the last valid record, so later appends never run into stale bytes
+        for (int i = position; i < segmentSize && i < position + HEADER_SIZE; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        segment.writePosition = position;
+    }
+
+    private static int checksum(byte kind, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(kind);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(byte kind, byte[] payload, Location location);
+    }
+
+    record Location(Segment segment, int offset, int length) {
+
+        // A payload nested at the given offset within this record's payload, read the same way as a whole record
+        Location slice(int payloadOffset, int payloadLength) {
+            return new Location(segment, offset + payloadOffset, payloadLength);
+        }
+    }
+
+    static final class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.smartfit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartfit.service.OperationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Content negotiation over the converter list Boot builds from our converter beans: JSON stays the default and the
+ * binary formats are only picked when asked for.
+ */
+class JacksonFormatsConfigTest {
+
+    private RequestResponseBodyMethodProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        OperationMetrics metrics = new OperationMetrics(new SimpleMeterRegistry());
+        JacksonFormatsConfig config = new JacksonFormatsConfig();
+        HttpMessageConverters converters = new HttpMessageConverters(List.of(
+                config.cborHttpMessageConverter(objectMapper, metrics),
+                config.smileHttpMessageConverter(objectMapper, metrics),
+                new TimedJacksonHttpMessageConverter(objectMapper, metrics)));
+        processor = new RequestResponseBodyMethodProcessor(converters.getConverters());
+    }
+
+    @Test
+    void missingAcceptGetsJson() throws Exception {
+        assertEquals("application/json", responseType(null));
+    }
+
+    @Test
+    void anyAcceptGetsJson() throws Exception {
+        assertEquals("application/json", responseType("*/*"));
+    }
+
+    @Test
+    void cborWhenAskedFor() throws Exception {
+        assertEquals("application/cbor", responseType("application/cbor"));
+    }
+
+    @Test
+    void smileWhenAskedFor() throws Exception {
+        assertEquals("application/x-jackson-smile", responseType("application/x-jackson-smile"));
+    }
+
+    private String responseType(String accept) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/checkin");
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        MethodParameter returnType = new MethodParameter(getClass().getDeclaredMethod("body"), -1);
+        processor.handleReturnValue(body(), returnType, new ModelAndViewContainer(),
+                new ServletWebRequest(request, response));
+
+        MediaType contentType = MediaType.parseMediaType(response.getContentType());
+        return contentType.getType() + "/" + contentType.getSubtype();
+    }
+
+    private Map<String, Object> body() {
+        return Map.of("title", "Morning run", "calories", 300);
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartfit.controller;
+
+import com.smartfit.model.CheckinSeries;
+import com.smartfit.service.CheckinService;
+import com.smartfit.service.CheckinStreamService;
+import com.smartfit.service.InMemoryUserDataVersionService;
+import com.smartfit.service.OperationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The export's async timeout, which has to outlast the short default of other asynchronous requests, and the
+ * series ETag, which has to change with the user's date.
+ */
+class CheckinControllerTest {
+
+    private static final long DEFAULT_TIMEOUT = Duration.ofSeconds(30).toMillis();
+    private static final Authentication USER = new TestingAuthenticationToken("user-1", null);
+
+    private CheckinService checkinService;
+    private CheckinController controller;
+    private MockHttpServletRequest request;
+    private WebAsyncManager asyncManager;
+
+    @BeforeEach
+    void setUp() {
+        checkinService = mock(CheckinService.class);
+        controller = new CheckinController(checkinService, mock(CheckinStreamService.class),
+                new InMemoryUserDataVersionService(new OperationMetrics(new SimpleMeterRegistry())),
+                Duration.ofMinutes(10));
+
+        // What RequestMappingHandlerAdapter sets up before invoking a handler
+        request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        StandardServletAsyncWebRequest asyncWebRequest =
+                new StandardServletAsyncWebRequest(request, new MockHttpServletResponse());
+        asyncWebRequest.setTimeout(DEFAULT_TIMEOUT);
+        asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setTaskExecutor(new TaskExecutorAdapter(Runnable::run));
+        asyncManager.setAsyncWebRequest(asyncWebRequest);
+    }
+
+    @Test
+    void exportGetsItsOwnTimeout() throws Exception {
+        controller.exportEntries(USER, request);
+        asyncManager.startCallableProcessing(() -> null);
+
+        assertEquals(Duration.ofMinutes(10).toMillis(), request.getAsyncContext().getTimeout());
+    }
+
+    @Test
+    void otherRequestsKeepTheDefaultTimeout() throws Exception {
+        asyncManager.startCallableProcessing(() -> null);
+
+        assertEquals(DEFAULT_TIMEOUT, request.getAsyncContext().getTimeout());
+    }
+
+    @Test
+    void seriesRevalidatesOnTheSameDay() {
+        LocalDate today = LocalDate.of(2024, 3, 10);
+        String etag = getSeries(today, null).getHeaders().getETag();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, getSeries(today, etag).getStatusCode());
+    }
+
+    @Test
+    void seriesIsReloadedOnTheNextDay() {
+        LocalDate today = LocalDate.of(2024, 3, 10);
+        String etag = getSeries(today, null).getHeaders().getETag();
+
+        ResponseEntity<CheckinSeries> nextDay = getSeries(today.plusDays(1), etag);
+
+        assertEquals(HttpStatus.OK, nextDay.getStatusCode());
+        assertNotEquals(etag, nextDay.getHeaders().getETag());
+    }
+
+    private ResponseEntity<CheckinSeries> getSeries(LocalDate today, String ifNoneMatch) {
+        when(checkinService.getToday("user-1")).thenReturn(CompletableFuture.completedFuture(today));
+        when(checkinService.getSeries(eq("user-1"), eq(today), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(new CheckinSeries()));
+
+        MockHttpServletRequest seriesRequest = new MockHttpServletRequest("GET", "/api/checkin/series");
+        if (ifNoneMatch != null) {
+            seriesRequest.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        ServletWebRequest webRequest = new ServletWebRequest(seriesRequest, new MockHttpServletResponse());
+        return controller.getSeries("weekly", "workouts", null, USER, webRequest).join();
+    }
+}
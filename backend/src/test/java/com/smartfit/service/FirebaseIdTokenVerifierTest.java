@@ -0,0 +1,188 @@
+package com.smartfit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFutures;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseToken;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.IncorrectClaimException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Local verification against a stand-in for Google's signing key endpoint, serving the certificate of a test key
+ * under {@link #KEY_ID}, and the Admin SDK fallback for tokens signed with a key the endpoint did not list.
+ */
+class FirebaseIdTokenVerifierTest {
+
+    private static final String PROJECT_ID = "smartfit-test";
+    private static final String ISSUER = "https://securetoken.google.com/" + PROJECT_ID;
+    private static final String KEYS_URL = "https://keys.test/securetoken";
+    private static final String KEY_ID = "key-1";
+
+    private PrivateKey signingKey;
+    private GoogleSigningKeyProvider keyProvider;
+    private FirebaseIdTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = readPrivateKey();
+        String certificate = new ClassPathResource("firebase/signing-cert.pem")
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer keyServer = MockRestServiceServer.bindTo(restTemplate).build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=3600");
+        keyServer.expect(ExpectedCount.manyTimes(), requestTo(KEYS_URL))
+                .andRespond(withSuccess(new ObjectMapper().writeValueAsString(Map.of(KEY_ID, certificate)),
+                        MediaType.APPLICATION_JSON).headers(headers));
+
+        keyProvider = new GoogleSigningKeyProvider(restTemplate, KEYS_URL);
+        keyProvider.start();
+        verifier = new FirebaseIdTokenVerifier(keyProvider, new ObjectMapper(), PROJECT_ID);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!verifier.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(verifier.isReady(), "signing keys were not fetched");
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyProvider.stop();
+    }
+
+    @Test
+    void acceptsValidToken() {
+        Instant expiration = Instant.now().plus(Duration.ofHours(1));
+
+        FirebaseIdTokenVerifier.VerifiedIdToken verified = verifier.verify(token().expiration(Date.from(expiration))
+                .compact());
+
+        assertEquals("user-1", verified.userId());
+        assertEquals(expiration.getEpochSecond(), verified.expiresAt());
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        Instant issuedAt = Instant.now().minus(Duration.ofHours(2));
+        String idToken = token()
+                .issuedAt(Date.from(issuedAt))
+                .claim("auth_time", issuedAt.getEpochSecond())
+                .expiration(Date.from(issuedAt.plus(Duration.ofHours(1))))
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> verifier.verify(idToken));
+    }
+
+    @Test
+    void rejectsOtherAudience() {
+        String idToken = withAudience(token(), "other-project").compact();
+
+        assertThrows(IncorrectClaimException.class, () -> verifier.verify(idToken));
+    }
+
+    @Test
+    void rejectsOtherIssuer() {
+        String idToken = token().issuer("https://securetoken.google.com/other-project").compact();
+
+        assertThrows(IncorrectClaimException.class, () -> verifier.verify(idToken));
+    }
+
+    @Test
+    void unknownKeyIdFallsBackToAdminSdk() throws Exception {
+        String idToken = token().header().keyId("rotated-key").and().compact();
+        assertThrows(FirebaseIdTokenVerifier.SigningKeyUnavailableException.class, () -> verifier.verify(idToken));
+
+        FirebaseToken decodedToken = mock(FirebaseToken.class);
+        when(decodedToken.getUid()).thenReturn("user-1");
+        when(decodedToken.getClaims()).thenReturn(Map.of("exp", Instant.now().getEpochSecond() + 3600));
+        FirebaseAuth firebaseAuth = mock(FirebaseAuth.class);
+        when(firebaseAuth.verifyIdTokenAsync(idToken)).thenReturn(ApiFutures.immediateFuture(decodedToken));
+
+        FirebaseService firebaseService = firebaseService(firebaseAuth);
+
+        assertEquals("user-1", firebaseService.getUserIdFromToken(idToken));
+        verify(firebaseAuth).verifyIdTokenAsync(idToken);
+    }
+
+    @Test
+    void knownKeyIdSkipsAdminSdk() throws Exception {
+        FirebaseAuth firebaseAuth = mock(FirebaseAuth.class);
+        FirebaseService firebaseService = firebaseService(firebaseAuth);
+
+        assertEquals("user-1", firebaseService.getUserIdFromToken(token().compact()));
+        verify(firebaseAuth, never()).verifyIdTokenAsync(anyString());
+    }
+
+    // A token as Firebase issues it, signed with the test key; each test changes what it is about
+    private JwtBuilder token() {
+        Instant now = Instant.now();
+        return withAudience(Jwts.builder(), PROJECT_ID)
+                .header().keyId(KEY_ID).and()
+                .subject("user-1")
+                .issuer(ISSUER)
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plus(Duration.ofHours(1))))
+                .claim("auth_time", now.getEpochSecond())
+                .signWith(signingKey, Jwts.SIG.RS256);
+    }
+
+    // Firebase ID tokens carry aud as a single string, which only the deprecated single() still writes
+    @SuppressWarnings("deprecation")
+    private static JwtBuilder withAudience(JwtBuilder builder, String audience) {
+        return builder.audience().single(audience);
+    }
+
+    @SuppressWarnings("unchecked")
+    private FirebaseService firebaseService(FirebaseAuth firebaseAuth) {
+        ObjectProvider<FirebaseAuth> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(firebaseAuth);
+        FirebaseService firebaseService = new FirebaseService(new FirebaseTokenCache(100), verifier,
+                new OperationMetrics(new SimpleMeterRegistry()), provider);
+        ReflectionTestUtils.setField(firebaseService, "localVerification", true);
+        return firebaseService;
+    }
+
+    private static PrivateKey readPrivateKey() throws Exception {
+        String pem = new ClassPathResource("firebase/signing-key.pem").getContentAsString(StandardCharsets.UTF_8)
+                .replaceAll("-----[A-Z ]+-----", "")
+                .replaceAll("\\s", "");
+        return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(pem)));
+    }
+}
@@ -0,0 +1,175 @@
+package com.smartfit.service;
+
+import com.smartfit.controller.SettingsController;
+import com.smartfit.model.CheckinEntry;
+import com.smartfit.model.UserSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two instances, each with its own settings cache, over one shared store standing in for Firestore: a save made
+ * through one instance must be seen by the other on its next read, not once its cache entry expires, including the
+ * zone new check-ins are stamped with.
+ */
+class SettingsServiceTest {
+
+    private static final String USER_ID = "user-1";
+    private static final Authentication USER = new TestingAuthenticationToken(USER_ID, null);
+
+    private final Map<String, UserSettings> documents = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final OperationMetrics metrics = new OperationMetrics(new SimpleMeterRegistry());
+
+    private Instance instanceA;
+    private Instance instanceB;
+
+    @BeforeEach
+    void setUp() {
+        instanceA = new Instance();
+        instanceB = new Instance();
+        instanceA.settingsService.saveUserSettings(settingsInZone("Europe/Berlin")).join();
+    }
+
+    @Test
+    void conditionalGetSeesSaveOfOtherInstance() {
+        ResponseEntity<UserSettings> cachedOnB = instanceB.getSettings(null);
+        assertEquals("Europe/Berlin", cachedOnB.getBody().getTimeZone());
+
+        instanceA.settingsService.saveUserSettings(settingsInZone("America/New_York")).join();
+
+        ResponseEntity<UserSettings> afterSave = instanceB.getSettings(cachedOnB.getHeaders().getETag());
+        assertEquals(HttpStatus.OK, afterSave.getStatusCode());
+        assertEquals("America/New_York", afterSave.getBody().getTimeZone());
+
+        ResponseEntity<UserSettings> unchanged = instanceB.getSettings(afterSave.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+    }
+
+    @Test
+    void zoneLookupSeesSaveOfOtherInstance() {
+        assertEquals("Europe/Berlin", instanceB.settingsService.getUserSettings(USER_ID).join().getTimeZone());
+
+        instanceA.settingsService.saveUserSettings(settingsInZone("Asia/Tokyo")).join();
+
+        assertEquals("Asia/Tokyo", instanceB.settingsService.getUserSettings(USER_ID).join().getTimeZone());
+    }
+
+    @Test
+    void checkinOnOtherInstanceGetsDayOfNewZone() {
+        CheckinStore store = mock(CheckinStore.class);
+        when(store.createEntry(any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+        CheckinService checkinService = new CheckinService(store, null, null, instanceB.versionService,
+                new ReadCoalescer(instanceB.versionService, new SimpleMeterRegistry()), instanceB.settingsService,
+                ZoneOffset.UTC, Duration.ofSeconds(5), Duration.ofDays(30), 100);
+        assertEquals("Europe/Berlin", instanceB.settingsService.getUserSettings(USER_ID).join().getTimeZone());
+
+        instanceA.settingsService.saveUserSettings(settingsInZone("America/New_York")).join();
+
+        // 00:30 on the 11th in Berlin, still the 10th in New York
+        CheckinEntry entry = new CheckinEntry();
+        entry.setUserId(USER_ID);
+        entry.setType(CheckinEntry.CheckinType.WORKOUT);
+        entry.setTimestamp(LocalDateTime.of(2024, 3, 10, 23, 30));
+        entry.setTimestampOffset(ZoneOffset.UTC);
+        CheckinEntry created = checkinService.createEntry(entry).join();
+
+        assertEquals("America/New_York", created.getTimeZone());
+        assertEquals(20240310, created.getDayKey());
+    }
+
+    @Test
+    void unchangedSettingsComeFromCache() {
+        UserSettings first = instanceB.settingsService.getUserSettings(USER_ID).join();
+
+        assertSame(first, instanceB.settingsService.getUserSettings(USER_ID).join());
+    }
+
+    private static UserSettings settingsInZone(String timeZone) {
+        UserSettings settings = new UserSettings(USER_ID);
+        settings.setTimeZone(timeZone);
+        return settings;
+    }
+
+    private static UserSettings copy(UserSettings settings) {
+        UserSettings copy = new UserSettings(settings.getUserId());
+        copy.setId(settings.getId());
+        copy.setWorkoutEnabled(settings.isWorkoutEnabled());
+        copy.setMealEnabled(settings.isMealEnabled());
+        copy.setWeightEnabled(settings.isWeightEnabled());
+        copy.setWaterEnabled(settings.isWaterEnabled());
+        copy.setTimeZone(settings.getTimeZone());
+        copy.setCreatedAt(settings.getCreatedAt());
+        copy.setUpdatedAt(settings.getUpdatedAt());
+        return copy;
+    }
+
+    // One backend instance: its own cache and controller, the shared documents and versions behind them
+    private final class Instance {
+
+        final UserDataVersionService versionService;
+        final SettingsService settingsService;
+        final SettingsController settingsController;
+
+        Instance() {
+            versionService = new UserDataVersionService(null, metrics) {
+                @Override
+                public CompletableFuture<Long> getSharedVersion(String userId) {
+                    AtomicLong version = versions.get(userId);
+                    return CompletableFuture.completedFuture(version != null ? version.get() : 0L);
+                }
+            };
+            settingsService = new SettingsService(null, new SettingsCache(100, Duration.ofMinutes(5)),
+                    versionService, metrics) {
+                @Override
+                protected CompletableFuture<UserSettings> loadUserSettings(String userId) {
+                    UserSettings stored = documents.get(userId);
+                    return CompletableFuture.completedFuture(stored != null ? copy(stored) : new UserSettings(userId));
+                }
+
+                @Override
+                protected CompletableFuture<StoredSettings> storeUserSettings(UserSettings settings) {
+                    settings.setId(settings.getUserId());
+                    settings.setUpdatedAt(LocalDateTime.now());
+                    documents.put(settings.getUserId(), copy(settings));
+                    long version = versions.computeIfAbsent(settings.getUserId(), u -> new AtomicLong())
+                            .incrementAndGet();
+                    return CompletableFuture.completedFuture(new StoredSettings(copy(settings), version));
+                }
+            };
+            settingsController = new SettingsController(settingsService, versionService);
+        }
+
+        ResponseEntity<UserSettings> getSettings(String ifNoneMatch) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/settings");
+            if (ifNoneMatch != null) {
+                request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            }
+            ServletWebRequest webRequest = new ServletWebRequest(request, new MockHttpServletResponse());
+            return settingsController.getUserSettings(USER, webRequest).join();
+        }
+    }
+}
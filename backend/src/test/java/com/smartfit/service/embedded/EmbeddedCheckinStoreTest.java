@@ -0,0 +1,93 @@
+package com.smartfit.service.embedded;
+
+import com.smartfit.model.CheckinBatchOperation;
+import com.smartfit.model.CheckinBatchResult;
+import com.smartfit.model.CheckinEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedCheckinStoreTest {
+
+    private static final String USER_ID = "user-1";
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedCheckinStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void batchIsReplayedWholeAfterReopening() throws Exception {
+        CheckinEntry kept = store.createEntry(entry("Kept", 100)).get();
+        CheckinEntry removed = store.createEntry(entry("Removed", 200)).get();
+        LocalDateTime keptCreatedAt = kept.getCreatedAt();
+
+        Map<Integer, CheckinBatchOperation> operations = new TreeMap<>();
+        operations.put(0, operation(CheckinBatchOperation.Type.CREATE, null, entry("Added", 300)));
+        operations.put(1, operation(CheckinBatchOperation.Type.UPDATE, kept.getId(), entry("Kept, edited", 150)));
+        operations.put(2, operation(CheckinBatchOperation.Type.DELETE, removed.getId(), null));
+        // Already deleted by the operation before
+        operations.put(3, operation(CheckinBatchOperation.Type.DELETE, removed.getId(), null));
+        Map<Integer, CheckinBatchResult> results = store.applyBatch(USER_ID, operations).get();
+        String addedId = results.get(0).getId();
+        assertEquals(404, results.get(3).getStatus());
+
+        store.close();
+        store = open();
+
+        List<CheckinEntry> entries = store.getAllEntriesByUserId(USER_ID, null, null).get().getEntries();
+        assertEquals(2, entries.size());
+        CheckinEntry edited = store.getEntryById(kept.getId()).get().orElseThrow();
+        assertEquals("Kept, edited", edited.getTitle());
+        assertEquals(keptCreatedAt, edited.getCreatedAt());
+        assertEquals("Added", store.getEntryById(addedId).get().orElseThrow().getTitle());
+        assertTrue(store.getEntryById(removed.getId()).get().isEmpty());
+    }
+
+    private EmbeddedCheckinStore open() throws Exception {
+        EmbeddedCheckinStore opened = new EmbeddedCheckinStore(directory.toString(), DataSize.ofMegabytes(1), false,
+                Duration.ofDays(30));
+        opened.open();
+        return opened;
+    }
+
+    private static CheckinEntry entry(String title, int calories) {
+        CheckinEntry entry = new CheckinEntry();
+        entry.setUserId(USER_ID);
+        entry.setType(CheckinEntry.CheckinType.MEAL);
+        entry.setTitle(title);
+        entry.setCalories(calories);
+        entry.setTimestamp(LocalDateTime.of(2026, 3, 1, 12, 0));
+        return entry;
+    }
+
+    private static CheckinBatchOperation operation(CheckinBatchOperation.Type type, String id, CheckinEntry entry) {
+        CheckinBatchOperation operation = new CheckinBatchOperation();
+        operation.setOp(type);
+        operation.setId(id);
+        operation.setEntry(entry);
+        return operation;
+    }
+}